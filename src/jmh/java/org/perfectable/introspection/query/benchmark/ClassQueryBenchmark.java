@@ -0,0 +1,120 @@
+package org.perfectable.introspection.query.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.perfectable.introspection.query.ClassQuery;
+
+/**
+ * Throughput of {@link ClassQuery} operations on generated classpath.
+ *
+ * <p>Each invocation creates new root query, so that headers read by previous invocations are not reused, and the
+ * whole scan is measured. Classes themselves stay loaded in the loader after first iteration, so benchmarks that
+ * load classes measure lookup of already loaded classes.
+ *
+ * <p>Run with {@code mvn -P benchmark test-compile exec:exec}, which also reports allocation rate using JMH
+ * {@code gc} profiler.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+@SuppressWarnings("nullness:initialization.field.uninitialized") // fields are initialized by trial setup
+public class ClassQueryBenchmark {
+	private static final int PACKAGE_COUNT = 20;
+	private static final int JAR_COUNT = 8;
+	private static final int DIRECTORY_COUNT = 2;
+	private static final int QUERIED_PACKAGE_INDEX = 3;
+
+	@Param({"2000", "20000"})
+	public int classCount;
+
+	@Param({"2", "16"})
+	public int hierarchyDepth;
+
+	private SyntheticClasspath classpath;
+	private ClassLoader loader;
+	private Class<?> rootInterface;
+	private Class<?> deepestClass;
+
+	@Setup(Level.Trial)
+	public void generateClasspath() throws IOException, ClassNotFoundException {
+		SyntheticClasspath.Layout layout = new SyntheticClasspath.Layout(classCount, PACKAGE_COUNT, hierarchyDepth,
+			JAR_COUNT, DIRECTORY_COUNT);
+		classpath = SyntheticClasspath.generate(layout);
+		loader = classpath.loader();
+		rootInterface = loader.loadClass(SyntheticClasspath.ROOT_INTERFACE_NAME);
+		deepestClass = loader.loadClass(SyntheticClasspath.className(layout, classCount - 1));
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteClasspath() throws IOException {
+		classpath.close();
+	}
+
+	@Benchmark
+	public long stream() {
+		return ClassQuery.of(loader)
+			.stream()
+			.count();
+	}
+
+	@Benchmark
+	public long inPackage() {
+		return ClassQuery.of(loader)
+			.inPackage(SyntheticClasspath.packageName(QUERIED_PACKAGE_INDEX))
+			.stream()
+			.count();
+	}
+
+	@Benchmark
+	public long subtypeOf() {
+		return ClassQuery.of(loader)
+			.inPackage("synthetic")
+			.subtypeOf(rootInterface)
+			.stream()
+			.count();
+	}
+
+	@Benchmark
+	public long annotatedWith() {
+		return ClassQuery.of(loader)
+			.inPackage("synthetic")
+			.annotatedWith(Deprecated.class)
+			.stream()
+			.count();
+	}
+
+	@Benchmark
+	public long descriptors() {
+		return ClassQuery.of(loader)
+			.inPackage("synthetic")
+			.subtypeOf(rootInterface)
+			.descriptors()
+			.stream()
+			.count();
+	}
+
+	@Benchmark
+	public boolean contains() {
+		return ClassQuery.of(loader)
+			.subtypeOf(rootInterface)
+			.contains(deepestClass);
+	}
+}
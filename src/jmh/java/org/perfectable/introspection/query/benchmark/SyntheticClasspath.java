@@ -0,0 +1,192 @@
+package org.perfectable.introspection.query.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.NotFoundException;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.annotation.Annotation;
+
+/**
+ * Generated classpath with many classes, split between jars and directories.
+ *
+ * <p>Classes are placed in packages {@code synthetic.p0}, {@code synthetic.p1} and so on, which are distributed
+ * between elements in round-robin fashion. In each package, classes form chains of inheritance of specified depth,
+ * which start with class implementing {@link #ROOT_INTERFACE_NAME}. Every {@link #ANNOTATION_INTERVAL}-th class is
+ * annotated with {@link Deprecated}.
+ */
+final class SyntheticClasspath implements AutoCloseable {
+	static final String ROOT_INTERFACE_NAME = "synthetic.Root";
+	static final int ANNOTATION_INTERVAL = 10;
+
+	private static final String PACKAGE_PREFIX = "synthetic.p";
+	private static final String CLASS_FILE_SUFFIX = ".class";
+
+	private final Path directory;
+	private final URLClassLoader loader;
+
+	static SyntheticClasspath generate(Layout layout) throws IOException {
+		Path directory = Files.createTempDirectory("introspectable-benchmark");
+		List<Element> elements = new ArrayList<>();
+		for (int i = 0; i < layout.jarCount; i++) {
+			elements.add(new Element(directory.resolve("element-" + i + ".jar"), true));
+		}
+		for (int i = 0; i < layout.directoryCount; i++) {
+			elements.add(new Element(directory.resolve("element-" + (layout.jarCount + i)), false));
+		}
+		ClassPool pool = new ClassPool(true);
+		CtClass root = pool.makeInterface(ROOT_INTERFACE_NAME);
+		elements.get(0).add(root);
+		for (int index = 0; index < layout.classCount; index++) {
+			int packageIndex = index % layout.packageCount;
+			Element element = elements.get(packageIndex % elements.size());
+			element.add(createClass(pool, root, layout, index));
+		}
+		URL[] urls = new URL[elements.size()];
+		for (int i = 0; i < elements.size(); i++) {
+			urls[i] = elements.get(i).write();
+		}
+		// loader is isolated from benchmark classpath, so that only generated classes are scanned
+		return new SyntheticClasspath(directory, new URLClassLoader(urls, null));
+	}
+
+	private SyntheticClasspath(Path directory, URLClassLoader loader) {
+		this.directory = directory;
+		this.loader = loader;
+	}
+
+	ClassLoader loader() {
+		return loader;
+	}
+
+	static String packageName(int packageIndex) {
+		return PACKAGE_PREFIX + packageIndex;
+	}
+
+	static String className(Layout layout, int index) {
+		return packageName(index % layout.packageCount) + ".Type" + index;
+	}
+
+	@Override
+	public void close() throws IOException {
+		loader.close();
+		List<Path> paths;
+		try (Stream<Path> walked = Files.walk(directory)) {
+			// children are deleted before their directories
+			paths = walked.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+		}
+		for (Path path : paths) {
+			Files.delete(path);
+		}
+	}
+
+	private static CtClass createClass(ClassPool pool, CtClass root, Layout layout, int index) {
+		// classes in the same package are packageCount apart, so each chain step stays in one package
+		int depth = index / layout.packageCount % layout.hierarchyDepth;
+		CtClass result;
+		try {
+			if (depth == 0) {
+				result = pool.makeClass(className(layout, index));
+				result.addInterface(root);
+			}
+			else {
+				CtClass superclass = pool.get(className(layout, index - layout.packageCount));
+				result = pool.makeClass(className(layout, index), superclass);
+			}
+		}
+		catch (NotFoundException e) {
+			throw new AssertionError(e);
+		}
+		if (index % ANNOTATION_INTERVAL == 0) {
+			ClassFile classFile = result.getClassFile();
+			AnnotationsAttribute annotations =
+				new AnnotationsAttribute(classFile.getConstPool(), AnnotationsAttribute.visibleTag);
+			annotations.addAnnotation(new Annotation(Deprecated.class.getName(), classFile.getConstPool()));
+			classFile.addAttribute(annotations);
+		}
+		return result;
+	}
+
+	/**
+	 * Shape of generated classpath.
+	 */
+	static final class Layout {
+		final int classCount;
+		final int packageCount;
+		final int hierarchyDepth;
+		final int jarCount;
+		final int directoryCount;
+
+		Layout(int classCount, int packageCount, int hierarchyDepth, int jarCount, int directoryCount) {
+			this.classCount = classCount;
+			this.packageCount = packageCount;
+			this.hierarchyDepth = hierarchyDepth;
+			this.jarCount = jarCount;
+			this.directoryCount = directoryCount;
+		}
+	}
+
+	private static final class Element {
+		private final Path path;
+		private final boolean archive;
+		private final List<CtClass> classes = new ArrayList<>();
+
+		Element(Path path, boolean archive) {
+			this.path = path;
+			this.archive = archive;
+		}
+
+		void add(CtClass ctClass) {
+			classes.add(ctClass);
+		}
+
+		URL write() throws IOException {
+			if (archive) {
+				try (OutputStream fileStream = Files.newOutputStream(path);
+					 JarOutputStream jarStream = new JarOutputStream(fileStream)) {
+					for (CtClass ctClass : classes) {
+						jarStream.putNextEntry(new ZipEntry(classFilePath(ctClass)));
+						jarStream.write(bytecode(ctClass));
+						jarStream.closeEntry();
+					}
+				}
+			}
+			else {
+				Files.createDirectories(path);
+				for (CtClass ctClass : classes) {
+					Files.createDirectories(path.resolve(ctClass.getPackageName().replace('.', '/')));
+					Files.write(path.resolve(classFilePath(ctClass)), bytecode(ctClass));
+				}
+			}
+			return path.toUri().toURL();
+		}
+
+		private static String classFilePath(CtClass ctClass) {
+			return ctClass.getName().replace('.', '/') + CLASS_FILE_SUFFIX;
+		}
+
+		private static byte[] bytecode(CtClass ctClass) throws IOException {
+			try {
+				return ctClass.toBytecode();
+			}
+			catch (CannotCompileException e) {
+				throw new AssertionError(e);
+			}
+		}
+	}
+}
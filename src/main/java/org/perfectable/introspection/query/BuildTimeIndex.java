@@ -0,0 +1,91 @@
+package org.perfectable.introspection.query;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Format of class index generated at compile time by {@link ClassIndexProcessor}.
+ *
+ * <p>Index is a text resource, with format header in first line and one line for each compiled class. Class line
+ * contains tab-separated class name, access flags, superclass name (empty if there is none), space-separated
+ * interface names, space-separated names of runtime-visible annotation types present on class and space-separated
+ * names of runtime-visible annotation types present on its fields, methods, constructors and method parameters.
+ *
+ * <p>Indexes in previous format, which lack member annotations, are rejected, so that headers of their classes are
+ * read from class files instead.
+ */
+final class BuildTimeIndex {
+	static final String RESOURCE_NAME = "META-INF/introspectable/index";
+
+	private static final String FORMAT_HEADER = "introspectable-class-index 2";
+	private static final char FIELD_SEPARATOR = '\t';
+	private static final char NAME_SEPARATOR = ' ';
+	private static final int FIELD_COUNT = 6;
+
+	private static final Splitter FIELD_SPLITTER = Splitter.on(FIELD_SEPARATOR);
+	private static final Splitter NAME_SPLITTER = Splitter.on(NAME_SEPARATOR).omitEmptyStrings();
+	private static final Joiner FIELD_JOINER = Joiner.on(FIELD_SEPARATOR);
+	private static final Joiner NAME_JOINER = Joiner.on(NAME_SEPARATOR);
+
+	private BuildTimeIndex() {
+		// utility
+	}
+
+	static ImmutableList<ClassFileHeader> read(InputStream stream) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+		if (!FORMAT_HEADER.equals(reader.readLine())) {
+			throw new IOException("Unsupported class index format");
+		}
+		ImmutableList.Builder<ClassFileHeader> result = ImmutableList.builder();
+		@Nullable String line;
+		while ((line = reader.readLine()) != null) { // SUPPRESS InnerAssignment
+			if (!line.isEmpty()) {
+				result.add(parseLine(line));
+			}
+		}
+		return result.build();
+	}
+
+	static void write(Writer writer, Iterable<ClassFileHeader> headers) throws IOException {
+		writer.write(FORMAT_HEADER);
+		writer.write('\n');
+		for (ClassFileHeader header : headers) {
+			writer.write(FIELD_JOINER.join(header.name(), header.accessFlags(),
+				header.superclassName().orElse(""),
+				NAME_JOINER.join(header.interfaceNames()),
+				NAME_JOINER.join(header.annotationTypeNames()),
+				NAME_JOINER.join(header.memberAnnotationTypeNames())));
+			writer.write('\n');
+		}
+	}
+
+	private static ClassFileHeader parseLine(String line) throws IOException {
+		List<String> fields = FIELD_SPLITTER.splitToList(line);
+		if (fields.size() != FIELD_COUNT) {
+			throw new IOException("Malformed class index line: " + line);
+		}
+		int accessFlags;
+		try {
+			accessFlags = Integer.parseInt(fields.get(1));
+		}
+		catch (NumberFormatException e) {
+			throw new IOException("Malformed access flags in class index line: " + line, e);
+		}
+		String superclassName = fields.get(2);
+		return ClassFileHeader.of(accessFlags, fields.get(0), superclassName.isEmpty() ? null : superclassName,
+			ImmutableList.copyOf(NAME_SPLITTER.split(fields.get(3))),
+			ImmutableSet.copyOf(NAME_SPLITTER.split(fields.get(4))),
+			ImmutableSet.copyOf(NAME_SPLITTER.split(fields.get(5))));
+	}
+}
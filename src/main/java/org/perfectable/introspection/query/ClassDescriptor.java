@@ -0,0 +1,169 @@
+package org.perfectable.introspection.query;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Modifier;
+import java.util.Objects;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Description of class read from its class file, without loading it.
+ *
+ * <p>Descriptors are returned by {@link ClassDescriptorQuery}. They are immutable and provide information that is
+ * available in class file: name, modifiers, names of direct supertypes and runtime-visible annotations. Class itself
+ * is only loaded when {@link #load} is called.
+ *
+ * <p>Descriptors are equal when they describe class with the same name, as seen by the same class loader.
+ *
+ * @param <C> base type of described class
+ */
+public final class ClassDescriptor<C> {
+	private final ClassFileHeader header;
+	private final ClassFileSource classFiles;
+	private final ClassQuery.TypeLoader loader;
+	private final LoadFailureCache loadFailures;
+	private final Class<? extends C> castedType;
+
+	static <C> ClassDescriptor<C> of(ClassFileHeader header, ClassFileSource classFiles,
+									 ClassQuery.TypeLoader loader, LoadFailureCache loadFailures,
+									 Class<? extends C> castedType) {
+		return new ClassDescriptor<>(header, classFiles, loader, loadFailures, castedType);
+	}
+
+	private ClassDescriptor(ClassFileHeader header, ClassFileSource classFiles,
+							ClassQuery.TypeLoader loader, LoadFailureCache loadFailures,
+							Class<? extends C> castedType) {
+		this.header = header;
+		this.classFiles = classFiles;
+		this.loader = loader;
+		this.loadFailures = loadFailures;
+		this.castedType = castedType;
+	}
+
+	/**
+	 * Binary name of the class, as returned by {@link Class#getName}.
+	 *
+	 * @return name of described class
+	 */
+	public String name() {
+		return header.name();
+	}
+
+	/**
+	 * Modifiers of the class, encoded as in {@link Modifier}.
+	 *
+	 * <p>These are access flags from class file. For nested classes, they might differ from
+	 * {@link Class#getModifiers}, as class file doesn't record private, protected and static modifiers of nested
+	 * class in its access flags.
+	 *
+	 * @return modifiers of described class
+	 */
+	public int modifiers() {
+		return header.modifiers();
+	}
+
+	/**
+	 * Kind of the class.
+	 *
+	 * @return kind of described class
+	 */
+	public ClassKind kind() {
+		return ClassKind.of(header);
+	}
+
+	/**
+	 * Name of direct superclass.
+	 *
+	 * @return name of superclass, or empty if class is {@link Object} or module descriptor
+	 */
+	public Optional<String> superclassName() {
+		return header.superclassName();
+	}
+
+	/**
+	 * Names of interfaces directly implemented or extended, in declaration order.
+	 *
+	 * @return names of direct interfaces
+	 */
+	public ImmutableList<String> interfaceNames() {
+		return header.interfaceNames();
+	}
+
+	/**
+	 * Names of runtime-visible annotation types present on the class.
+	 *
+	 * @return names of annotation types
+	 */
+	public ImmutableSet<String> annotationTypeNames() {
+		return header.annotationTypeNames();
+	}
+
+	/**
+	 * Names of runtime-visible annotation types present on fields, methods, constructors or method parameters
+	 * declared by the class.
+	 *
+	 * @return names of annotation types present on members
+	 */
+	public ImmutableSet<String> memberAnnotationTypeNames() {
+		return header.memberAnnotationTypeNames();
+	}
+
+	/**
+	 * Extracts annotation of specified type, with its values, from the class file.
+	 *
+	 * <p>Described class is not loaded, but annotation type, and types used in its values, are.
+	 *
+	 * @param annotationType type of annotation to extract
+	 * @param <A> type of annotation
+	 * @return annotation present on the class, or empty if it is not present
+	 */
+	public <A extends Annotation> Optional<A> annotation(Class<A> annotationType) {
+		@Nullable A annotation = classFiles.annotations(header).getAnnotation(annotationType);
+		return Optional.ofNullable(annotation);
+	}
+
+	/**
+	 * Loads described class.
+	 *
+	 * <p>Class is loaded by the class loader of the query that returned this descriptor, but is not initialized.
+	 * Failure to load is remembered with other {@link ClassQuery#loadFailures load failures} of the loader, and
+	 * class that failed once is not loaded again.
+	 *
+	 * @return loaded class
+	 * @throws ClassNotFoundException when class cannot be found or loaded by loader, with original failure as cause,
+	 *     or with reason of failure in message if class failed to load before
+	 */
+	public Class<? extends C> load() throws ClassNotFoundException {
+		return loadFailures.load(header.name(), loader).asSubclass(castedType);
+	}
+
+	ClassLoader classLoader() {
+		return classFiles.loader();
+	}
+
+	@Override
+	public boolean equals(@Nullable Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ClassDescriptor<?>)) {
+			return false;
+		}
+		ClassDescriptor<?> other = (ClassDescriptor<?>) obj;
+		return header.name().equals(other.header.name())
+			&& classLoader() == other.classLoader();
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(header.name(), classLoader());
+	}
+
+	@Override
+	public String toString() {
+		return "ClassDescriptor(" + header.name() + ")";
+	}
+}
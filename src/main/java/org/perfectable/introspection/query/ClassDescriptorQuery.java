@@ -0,0 +1,115 @@
+package org.perfectable.introspection.query;
+
+import java.util.Comparator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import com.google.common.collect.Ordering;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Iterable-like container that searches for classes without loading them.
+ *
+ * <p>This is variant of {@link ClassQuery}, obtained by {@link ClassQuery#descriptors}, that returns
+ * {@link ClassDescriptor} for each found class instead of the class itself. Classes are never loaded by this query,
+ * so it doesn't use memory for class metadata and doesn't run any class initialization. Any found class can be
+ * loaded explicitly by {@link ClassDescriptor#load}.
+ *
+ * <p>Instances of this class are immutable, each filtering produces new, modified instance.
+ *
+ * <p>Example usage, which lists names of all classes in package "org.perfectable" that implement
+ * {@link java.io.Serializable}:
+ * <pre>
+ *     ClassQuery.system()
+ *         .inPackage("org.perfectable")
+ *         .subtypeOf(java.io.Serializable.class)
+ *         .descriptors()
+ *         .stream()
+ *         .map(ClassDescriptor::name)
+ *         .forEach(this::register);
+ * </pre>
+ *
+ * @param <C> base type of described classes
+ */
+public final class ClassDescriptorQuery<C> extends AbstractQuery<ClassDescriptor<C>, ClassDescriptorQuery<C>> {
+	private static final Predicate<? super ClassDescriptor<?>> DEFAULT_FILTER = descriptor -> true;
+	private static final Comparator<? super ClassDescriptor<?>> DEFAULT_SORTING = Ordering.allEqual();
+
+	private final Predicate<? super ClassDescriptor<?>> membership;
+	private final Supplier<Stream<ClassDescriptor<C>>> source;
+	private final Predicate<? super ClassDescriptor<C>> filter;
+	private final Comparator<? super ClassDescriptor<C>> sorting;
+
+	/*
+	 * Membership is checked by the query that created descriptors, without listing them, and doesn't include filter
+	 * of this query.
+	 */
+	static <C> ClassDescriptorQuery<C> of(Predicate<? super ClassDescriptor<?>> membership,
+										  Supplier<Stream<ClassDescriptor<C>>> source) {
+		return new ClassDescriptorQuery<>(membership, source, DEFAULT_FILTER, DEFAULT_SORTING);
+	}
+
+	private ClassDescriptorQuery(Predicate<? super ClassDescriptor<?>> membership,
+								 Supplier<Stream<ClassDescriptor<C>>> source,
+								 Predicate<? super ClassDescriptor<C>> filter,
+								 Comparator<? super ClassDescriptor<C>> sorting) {
+		this.membership = membership;
+		this.source = source;
+		this.filter = filter;
+		this.sorting = sorting;
+	}
+
+	/**
+	 * Restricts query to descriptors that matches specified predicate.
+	 *
+	 * <p>This restriction works on unloaded classes.
+	 */
+	@Override
+	public ClassDescriptorQuery<C> filter(Predicate<? super ClassDescriptor<C>> additionalFilter) {
+		@SuppressWarnings("unchecked")
+		Predicate<? super ClassDescriptor<C>> newFilter =
+			((Predicate<ClassDescriptor<C>>) filter).and(additionalFilter);
+		return new ClassDescriptorQuery<>(membership, source, newFilter, sorting);
+	}
+
+	@Override
+	public ClassDescriptorQuery<C> sorted(Comparator<? super ClassDescriptor<C>> nextComparator) {
+		@SuppressWarnings("unchecked")
+		Comparator<@Nullable Object> castedComparator = (Comparator<@Nullable Object>) nextComparator;
+		Comparator<? super ClassDescriptor<C>> newSorting = sorting.thenComparing(castedComparator);
+		return new ClassDescriptorQuery<>(membership, source, filter, newSorting);
+	}
+
+	@Override
+	public Stream<ClassDescriptor<C>> stream() {
+		Stream<ClassDescriptor<C>> descriptors = source.get();
+		Stream<ClassDescriptor<C>> filtered = filter == DEFAULT_FILTER ?
+			descriptors : descriptors.filter(filter);
+		Stream<ClassDescriptor<C>> sorted = sorting == DEFAULT_SORTING ?
+			filtered : filtered.sorted(sorting);
+		return sorted;
+	}
+
+	/**
+	 * Checks if query would return descriptor equal to specified one.
+	 *
+	 * <p>This check doesn't scan classpath. Restrictions of the query are tested on the candidate, and presence of its
+	 * class file is checked in classpath directly.
+	 *
+	 * @param candidate descriptor to check
+	 * @return if query contains descriptor of the same class
+	 */
+	@Override
+	public boolean contains(@Nullable Object candidate) {
+		if (!(candidate instanceof ClassDescriptor<?>)) {
+			return false;
+		}
+		@SuppressWarnings("unchecked")
+		ClassDescriptor<C> candidateDescriptor = (ClassDescriptor<C>) candidate;
+		if (filter != DEFAULT_FILTER && !filter.test(candidateDescriptor)) {
+			return false;
+		}
+		return membership.test(candidateDescriptor);
+	}
+}
@@ -0,0 +1,307 @@
+package org.perfectable.introspection.query;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Structural information about class, read from its class file.
+ *
+ * <p>Only constant pool, access flags, names of class, superclass and interfaces and runtime-visible annotation
+ * attributes are read. From fields and methods, only types of their annotations, and annotations on method
+ * parameters, are collected, without distinguishing which member they were present on. Other attributes are skipped
+ * without interpretation.
+ */
+final class ClassFileHeader {
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final String ANNOTATIONS_ATTRIBUTE = "RuntimeVisibleAnnotations";
+	private static final String PARAMETER_ANNOTATIONS_ATTRIBUTE = "RuntimeVisibleParameterAnnotations";
+
+	private static final int TAG_UTF8 = 1;
+	private static final int TAG_INTEGER = 3;
+	private static final int TAG_FLOAT = 4;
+	private static final int TAG_LONG = 5;
+	private static final int TAG_DOUBLE = 6;
+	private static final int TAG_CLASS = 7;
+	private static final int TAG_STRING = 8;
+	private static final int TAG_FIELD_REFERENCE = 9;
+	private static final int TAG_METHOD_REFERENCE = 10;
+	private static final int TAG_INTERFACE_METHOD_REFERENCE = 11;
+	private static final int TAG_NAME_AND_TYPE = 12;
+	private static final int TAG_METHOD_HANDLE = 15;
+	private static final int TAG_METHOD_TYPE = 16;
+	private static final int TAG_DYNAMIC = 17;
+	private static final int TAG_INVOKE_DYNAMIC = 18;
+	private static final int TAG_MODULE = 19;
+	private static final int TAG_PACKAGE = 20;
+
+	private static final int METHOD_HANDLE_SIZE = 3;
+
+	private static final int CLASS_MODIFIERS = Modifier.classModifiers() | Modifier.INTERFACE;
+
+	private static final ImmutableMap<Integer, Integer> SKIPPED_CONSTANT_SIZES =
+		ImmutableMap.<Integer, Integer>builder()
+			.put(TAG_INTEGER, Integer.BYTES)
+			.put(TAG_FLOAT, Float.BYTES)
+			.put(TAG_LONG, Long.BYTES)
+			.put(TAG_DOUBLE, Double.BYTES)
+			.put(TAG_STRING, Short.BYTES)
+			.put(TAG_FIELD_REFERENCE, Integer.BYTES)
+			.put(TAG_METHOD_REFERENCE, Integer.BYTES)
+			.put(TAG_INTERFACE_METHOD_REFERENCE, Integer.BYTES)
+			.put(TAG_NAME_AND_TYPE, Integer.BYTES)
+			.put(TAG_METHOD_HANDLE, METHOD_HANDLE_SIZE)
+			.put(TAG_METHOD_TYPE, Short.BYTES)
+			.put(TAG_DYNAMIC, Integer.BYTES)
+			.put(TAG_INVOKE_DYNAMIC, Integer.BYTES)
+			.put(TAG_MODULE, Short.BYTES)
+			.put(TAG_PACKAGE, Short.BYTES)
+			.build();
+
+	private static final char ELEMENT_ENUM = 'e';
+	private static final char ELEMENT_ANNOTATION = '@';
+	private static final char ELEMENT_ARRAY = '[';
+
+	private final int accessFlags;
+	private final String name;
+	private final @Nullable String superclassName;
+	private final ImmutableList<String> interfaceNames;
+	private final ImmutableSet<String> annotationTypeNames;
+	private final ImmutableSet<String> memberAnnotationTypeNames;
+
+	static ClassFileHeader read(InputStream stream) throws IOException {
+		return new Parser(new DataInputStream(stream)).parse();
+	}
+
+	static ClassFileHeader of(int accessFlags, String name, @Nullable String superclassName,
+							  ImmutableList<String> interfaceNames, ImmutableSet<String> annotationTypeNames,
+							  ImmutableSet<String> memberAnnotationTypeNames) {
+		return new ClassFileHeader(accessFlags, name, superclassName, interfaceNames, annotationTypeNames,
+			memberAnnotationTypeNames);
+	}
+
+	private ClassFileHeader(int accessFlags, String name, @Nullable String superclassName,
+							ImmutableList<String> interfaceNames, ImmutableSet<String> annotationTypeNames,
+							ImmutableSet<String> memberAnnotationTypeNames) {
+		this.accessFlags = accessFlags;
+		this.name = name;
+		this.superclassName = superclassName;
+		this.interfaceNames = interfaceNames;
+		this.annotationTypeNames = annotationTypeNames;
+		this.memberAnnotationTypeNames = memberAnnotationTypeNames;
+	}
+
+	int accessFlags() {
+		return accessFlags;
+	}
+
+	int modifiers() {
+		// remaining flags, like ACC_SUPER, have different meaning in Modifier
+		return accessFlags & CLASS_MODIFIERS;
+	}
+
+	String name() {
+		return name;
+	}
+
+	Optional<String> superclassName() {
+		return Optional.ofNullable(superclassName);
+	}
+
+	ImmutableList<String> interfaceNames() {
+		return interfaceNames;
+	}
+
+	ImmutableSet<String> annotationTypeNames() {
+		return annotationTypeNames;
+	}
+
+	ImmutableSet<String> memberAnnotationTypeNames() {
+		return memberAnnotationTypeNames;
+	}
+
+	private static final class Parser {
+		private final DataInputStream input;
+		private @Nullable String[] utf8Constants = new String[0];
+		private int[] classNameIndexes = new int[0];
+
+		Parser(DataInputStream input) {
+			this.input = input;
+		}
+
+		ClassFileHeader parse() throws IOException {
+			if (input.readInt() != MAGIC) {
+				throw new IOException("Not a class file");
+			}
+			skip(Short.BYTES + Short.BYTES); // minor and major version
+			readConstantPool();
+			final int accessFlags = input.readUnsignedShort();
+			final String name = readClassName();
+			final @Nullable String superclassName = readOptionalClassName();
+			ImmutableList<String> interfaceNames = readInterfaceNames();
+			ImmutableSet.Builder<String> memberAnnotationTypeNames = ImmutableSet.builder();
+			readMembers(memberAnnotationTypeNames); // fields
+			readMembers(memberAnnotationTypeNames); // methods
+			ImmutableSet.Builder<String> annotationTypeNames = ImmutableSet.builder();
+			readAttributes(annotationTypeNames);
+			return new ClassFileHeader(accessFlags, name, superclassName, interfaceNames,
+				annotationTypeNames.build(), memberAnnotationTypeNames.build());
+		}
+
+		private ImmutableList<String> readInterfaceNames() throws IOException {
+			int interfaceCount = input.readUnsignedShort();
+			ImmutableList.Builder<String> interfaceNames = ImmutableList.builderWithExpectedSize(interfaceCount);
+			for (int i = 0; i < interfaceCount; i++) {
+				interfaceNames.add(readClassName());
+			}
+			return interfaceNames.build();
+		}
+
+		private void readConstantPool() throws IOException {
+			int constantCount = input.readUnsignedShort();
+			utf8Constants = new String[constantCount];
+			classNameIndexes = new int[constantCount];
+			int index = 1;
+			while (index < constantCount) {
+				index += readConstant(index);
+			}
+		}
+
+		private int readConstant(int index) throws IOException {
+			int tag = input.readUnsignedByte();
+			if (tag == TAG_UTF8) {
+				utf8Constants[index] = input.readUTF();
+				return 1;
+			}
+			if (tag == TAG_CLASS) {
+				classNameIndexes[index] = input.readUnsignedShort();
+				return 1;
+			}
+			@Nullable Integer size = SKIPPED_CONSTANT_SIZES.get(tag);
+			if (size == null) {
+				throw new IOException("Unknown constant pool tag " + tag);
+			}
+			skip(size);
+			// long and double constants take two entries in constant pool
+			return tag == TAG_LONG || tag == TAG_DOUBLE ? 2 : 1;
+		}
+
+		private String readClassName() throws IOException {
+			@Nullable String className = readOptionalClassName();
+			if (className == null) {
+				throw new IOException("Missing class name");
+			}
+			return className;
+		}
+
+		private @Nullable String readOptionalClassName() throws IOException {
+			int classIndex = input.readUnsignedShort();
+			if (classIndex == 0) {
+				return null;
+			}
+			if (classIndex >= classNameIndexes.length) {
+				throw new IOException("Invalid class constant index " + classIndex);
+			}
+			String internalName = utf8Constant(classNameIndexes[classIndex]);
+			return internalName.replace('/', '.');
+		}
+
+		private String utf8Constant(int index) throws IOException {
+			if (index <= 0 || index >= utf8Constants.length) {
+				throw new IOException("Invalid constant pool index " + index);
+			}
+			@Nullable String constant = utf8Constants[index];
+			if (constant == null) {
+				throw new IOException("Constant pool entry " + index + " is not UTF8");
+			}
+			return constant;
+		}
+
+		private void readMembers(ImmutableSet.Builder<String> annotationTypeNames) throws IOException {
+			int memberCount = input.readUnsignedShort();
+			for (int i = 0; i < memberCount; i++) {
+				skip(Short.BYTES + Short.BYTES + Short.BYTES); // access flags, name and descriptor
+				readAttributes(annotationTypeNames);
+			}
+		}
+
+		private void readAttributes(ImmutableSet.Builder<String> annotationTypeNames) throws IOException {
+			int attributeCount = input.readUnsignedShort();
+			for (int i = 0; i < attributeCount; i++) {
+				String attributeName = utf8Constant(input.readUnsignedShort());
+				int attributeLength = input.readInt();
+				if (ANNOTATIONS_ATTRIBUTE.equals(attributeName)) {
+					readAnnotations(annotationTypeNames);
+				}
+				else if (PARAMETER_ANNOTATIONS_ATTRIBUTE.equals(attributeName)) {
+					int parameterCount = input.readUnsignedByte();
+					for (int j = 0; j < parameterCount; j++) {
+						readAnnotations(annotationTypeNames);
+					}
+				}
+				else {
+					skip(attributeLength);
+				}
+			}
+		}
+
+		private void readAnnotations(ImmutableSet.Builder<String> annotationTypeNames) throws IOException {
+			int annotationCount = input.readUnsignedShort();
+			for (int i = 0; i < annotationCount; i++) {
+				annotationTypeNames.add(readAnnotation());
+			}
+		}
+
+		private String readAnnotation() throws IOException {
+			String descriptor = utf8Constant(input.readUnsignedShort());
+			int pairCount = input.readUnsignedShort();
+			for (int i = 0; i < pairCount; i++) {
+				skip(Short.BYTES); // element name
+				skipElementValue();
+			}
+			// descriptor has form Lpackage/Name;
+			return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+		}
+
+		private void skipElementValue() throws IOException {
+			int tag = input.readUnsignedByte();
+			switch (tag) {
+				case ELEMENT_ENUM:
+					skip(Short.BYTES + Short.BYTES);
+					break;
+				case ELEMENT_ANNOTATION:
+					readAnnotation();
+					break;
+				case ELEMENT_ARRAY:
+					int valueCount = input.readUnsignedShort();
+					for (int i = 0; i < valueCount; i++) {
+						skipElementValue();
+					}
+					break;
+				default:
+					// primitive, string and class values are single constant pool index
+					skip(Short.BYTES);
+					break;
+			}
+		}
+
+		private void skip(int length) throws IOException {
+			int remaining = length;
+			while (remaining > 0) {
+				int skipped = input.skipBytes(remaining);
+				if (skipped <= 0) {
+					throw new EOFException();
+				}
+				remaining -= skipped;
+			}
+		}
+	}
+}
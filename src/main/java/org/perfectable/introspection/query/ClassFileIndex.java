@@ -0,0 +1,51 @@
+package org.perfectable.introspection.query;
+
+import java.util.Optional;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * In-memory store of class file headers read by queries.
+ *
+ * <p>Index is filled as a side effect of scanning: every header read is stored by class name. Later queries with
+ * the same class loader find headers here instead of reading class files again. Annotation presence is checked
+ * on annotation type names of header itself, which are stored in hashed sets.
+ *
+ * <p>Index doesn't keep inverted map from annotation type to annotated classes. Headers can be evicted, and a class
+ * might not have been read yet, so absence from such map wouldn't mean that class is not annotated, and every
+ * candidate would still need its header. Check on the header, which is found in the index by name, costs the same
+ * as lookup in inverted map would.
+ *
+ * <p>Number of stored headers is bounded, as index of system class loader lives as long as virtual machine. When
+ * bound is reached, least recently used headers are evicted, and read again from class files if needed.
+ *
+ * <p>This class is thread-safe, as system query is shared between threads.
+ */
+final class ClassFileIndex {
+	static final int MAXIMUM_HEADER_COUNT = 1 << 16;
+
+	private final Cache<String, ClassFileHeader> headers = CacheBuilder.newBuilder()
+		.maximumSize(MAXIMUM_HEADER_COUNT)
+		.build();
+
+	static ClassFileIndex create() {
+		return new ClassFileIndex();
+	}
+
+	private ClassFileIndex() {
+		// use factory method
+	}
+
+	Optional<ClassFileHeader> header(String className) {
+		return Optional.ofNullable(headers.getIfPresent(className));
+	}
+
+	void add(ClassFileHeader header) {
+		headers.asMap().putIfAbsent(header.name(), header);
+	}
+
+	void evict(String className) {
+		headers.invalidate(className);
+	}
+}
@@ -0,0 +1,217 @@
+package org.perfectable.introspection.query;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.MapMaker;
+import com.google.common.io.CountingInputStream;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Reads class files of classes visible by class loader, without loading them.
+ *
+ * <p>Structural checks are done on {@link ClassFileHeader}. Javassist is only used to create annotation instances,
+ * and only for classes which header shows that requested annotation is actually present. Parsed classes are detached
+ * from the pool as soon as annotations are extracted, so pool doesn't grow with number of scanned classes.
+ *
+ * <p>Headers that were read are kept in {@link ClassFileIndex}, which is shared by all queries of the same class
+ * loader. Index is initially filled with headers from build-time indexes generated by {@link ClassIndexProcessor},
+ * so classes that are indexed this way don't have their class files read, unless their headers were evicted.
+ */
+final class ClassFileSource {
+	private static final String CLASS_FILE_SUFFIX = ".class";
+
+	private static final ConcurrentMap<ClassLoader, ClassFileIndex> LOADER_INDEXES =
+		new MapMaker().weakKeys().makeMap();
+
+	private final ClassLoader loader;
+	private final QueryClassPool classPool;
+	private final Supplier<ClassFileIndex> index;
+	private final ScanMonitor monitor;
+
+	static ClassFileSource system() {
+		return of(ClassLoader.getSystemClassLoader());
+	}
+
+	static ClassFileSource of(ClassLoader loader) {
+		// own pool is used instead of default one, so that classes parsed by queries are not shared with other code
+		QueryClassPool classPool = new QueryClassPool();
+		classPool.appendClassPath(new LoaderClassPath(loader));
+		// index doesn't reference its loader, so it is discarded when loader is no longer used
+		Supplier<ClassFileIndex> index =
+			Suppliers.memoize(() -> LOADER_INDEXES.computeIfAbsent(loader, ClassFileSource::createIndex));
+		return new ClassFileSource(loader, classPool, index, ScanMonitor.NONE);
+	}
+
+	private ClassFileSource(ClassLoader loader, QueryClassPool classPool, Supplier<ClassFileIndex> index,
+							ScanMonitor monitor) {
+		this.loader = loader;
+		this.classPool = classPool;
+		this.index = index;
+		this.monitor = monitor;
+	}
+
+	/*
+	 * Discards header of specified class from indexes of all class loaders, after its class file changed.
+	 */
+	static void evictHeader(String className) {
+		LOADER_INDEXES.values().forEach(index -> index.evict(className));
+	}
+
+	ClassLoader loader() {
+		return loader;
+	}
+
+	ClassFileSource monitoredBy(ScanMonitor newMonitor) {
+		if (newMonitor == monitor) {
+			return this;
+		}
+		// pool and index are shared, only reporting of class file reads differs
+		return new ClassFileSource(loader, classPool, index, newMonitor);
+	}
+
+	Optional<ClassFileHeader> header(String className) {
+		ClassFileIndex currentIndex = index.get();
+		Optional<ClassFileHeader> indexed = currentIndex.header(className);
+		if (indexed.isPresent()) {
+			return indexed;
+		}
+		Optional<ClassFileHeader> header = read(className);
+		header.ifPresent(currentIndex::add);
+		return header;
+	}
+
+	boolean isAnnotatedWith(ClassFileHeader header, Class<? extends Annotation> annotationType) {
+		return header.annotationTypeNames().contains(annotationType.getName());
+	}
+
+	boolean hasMemberAnnotatedWith(ClassFileHeader header, Class<? extends Annotation> annotationType) {
+		return header.memberAnnotationTypeNames().contains(annotationType.getName());
+	}
+
+	AnnotatedElement annotations(ClassFileHeader header) {
+		return new HeaderAnnotatedElementAdapter(header);
+	}
+
+	boolean isParsed(String className) {
+		return classPool.isCached(className);
+	}
+
+	private static ClassFileIndex createIndex(ClassLoader loader) {
+		ClassFileIndex result = ClassFileIndex.create();
+		Enumeration<URL> buildTimeIndexes;
+		try {
+			buildTimeIndexes = loader.getResources(BuildTimeIndex.RESOURCE_NAME);
+		}
+		catch (IOException ignored) {
+			// build-time indexes are only an optimization, headers will be read from class files
+			return result;
+		}
+		// if class is indexed more than once, header from first index in class loader order is used
+		for (URL buildTimeIndex : Collections.list(buildTimeIndexes)) {
+			try (InputStream stream = buildTimeIndex.openStream()) {
+				BuildTimeIndex.read(stream).forEach(result::add);
+			}
+			catch (IOException ignored) {
+				// unreadable index is skipped, headers of its classes will be read from class files
+			}
+		}
+		return result;
+	}
+
+	private Optional<ClassFileHeader> read(String className) {
+		String classFilePath = className.replace('.', '/') + CLASS_FILE_SUFFIX;
+		@Nullable InputStream resource = loader.getResourceAsStream(classFilePath);
+		if (resource == null) {
+			return Optional.empty();
+		}
+		try (CountingInputStream stream = new CountingInputStream(new BufferedInputStream(resource))) {
+			ClassFileHeader header = ClassFileHeader.read(stream);
+			monitor.classFileRead(className, stream.getCount());
+			return Optional.of(header);
+		}
+		catch (IOException ignored) {
+			// class file is unreadable or malformed, it will not be loadable either
+			return Optional.empty();
+		}
+	}
+
+	private static final class QueryClassPool extends ClassPool {
+		boolean isCached(String className) {
+			return getCached(className) != null;
+		}
+	}
+
+	private final class HeaderAnnotatedElementAdapter implements AnnotatedElement {
+		private final ClassFileHeader header;
+
+		HeaderAnnotatedElementAdapter(ClassFileHeader header) {
+			this.header = header;
+		}
+
+		@SuppressWarnings({"unchecked", "IllegalCatch"})
+		@Override
+		public <T extends @Nullable Annotation> @Nullable T getAnnotation(Class<T> annotationClass) {
+			if (!header.annotationTypeNames().contains(annotationClass.getName())) {
+				return null;
+			}
+			CtClass ctClass;
+			try {
+				ctClass = classPool.get(header.name());
+			}
+			catch (NotFoundException e) {
+				return null;
+			}
+			try {
+				return (T) ctClass.getAnnotation(annotationClass);
+			}
+			catch (Exception e) {
+				return null;
+			}
+			finally {
+				ctClass.detach();
+			}
+		}
+
+		@Override
+		public Annotation[] getAnnotations() {
+			throw new UnsupportedOperationException("Inherited annotation fetching is not currently supported");
+		}
+
+		@Override
+		public Annotation[] getDeclaredAnnotations() {
+			if (header.annotationTypeNames().isEmpty()) {
+				return new Annotation[0];
+			}
+			CtClass ctClass;
+			try {
+				ctClass = classPool.get(header.name());
+			}
+			catch (NotFoundException e) {
+				return new Annotation[0];
+			}
+			try {
+				Object[] available = ctClass.getAvailableAnnotations();
+				return Arrays.copyOf(available, available.length, Annotation[].class);
+			}
+			finally {
+				ctClass.detach();
+			}
+		}
+	}
+}
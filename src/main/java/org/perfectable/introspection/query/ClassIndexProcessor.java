@@ -0,0 +1,251 @@
+package org.perfectable.introspection.query;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.google.auto.service.AutoService;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Annotation processor that records compiled classes in index used by {@link ClassQuery}.
+ *
+ * <p>For each compiled class, index contains its name, superclass, interfaces, runtime-visible annotations and
+ * runtime-visible annotations of its members. It is written as {@code META-INF/introspectable/index} resource.
+ * {@link ClassQuery} uses these resources for {@link ClassQuery#subtypeOf}, {@link ClassQuery#annotatedWith} and
+ * {@link ClassQuery#withMemberAnnotatedWith} restrictions instead of reading class files. Classes are still listed
+ * from archive contents, so classes that are not indexed, like anonymous and local ones, are also found.
+ *
+ * <p>Processor is registered as a service, but does nothing unless enabled by {@code -Aintrospectable.index}
+ * compiler option. Index should only be generated on full builds: classes that are later recompiled without it
+ * would still be restricted by their indexed headers.
+ */
+@AutoService(Processor.class)
+@SupportedAnnotationTypes("*")
+@SupportedOptions(ClassIndexProcessor.ENABLED_OPTION)
+public final class ClassIndexProcessor extends AbstractProcessor {
+	/** Compiler option that enables this processor. */
+	public static final String ENABLED_OPTION = "introspectable.index";
+
+	private static final String OBJECT_CLASS_NAME = Object.class.getName();
+	private static final String ANNOTATION_CLASS_NAME = Annotation.class.getName();
+
+	// access flags not represented in java.lang.reflect.Modifier
+	private static final int ACCESS_SUPER = 0x0020;
+	private static final int ACCESS_ANNOTATION = 0x2000;
+	private static final int ACCESS_ENUM = 0x4000;
+
+	private final Map<String, ClassFileHeader> headers = new LinkedHashMap<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+		if (!processingEnv.getOptions().containsKey(ENABLED_OPTION)) {
+			return false;
+		}
+		if (roundEnvironment.processingOver()) {
+			writeIndex();
+		}
+		else {
+			for (TypeElement type : ElementFilter.typesIn(roundEnvironment.getRootElements())) {
+				record(type);
+			}
+		}
+		return false;
+	}
+
+	private void record(TypeElement type) {
+		String name = binaryName(type);
+		headers.put(name, ClassFileHeader.of(accessFlags(type), name, superclassName(type),
+			interfaceNames(type), annotationTypeNames(type), memberAnnotationTypeNames(type)));
+		for (TypeElement member : ElementFilter.typesIn(type.getEnclosedElements())) {
+			record(member);
+		}
+	}
+
+	private void writeIndex() {
+		try {
+			FileObject resource = processingEnv.getFiler()
+				.createResource(StandardLocation.CLASS_OUTPUT, "", BuildTimeIndex.RESOURCE_NAME);
+			try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+				BuildTimeIndex.write(writer, headers.values());
+			}
+		}
+		catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+				"Could not write class index: " + e.getMessage());
+		}
+	}
+
+	private String binaryName(TypeElement type) {
+		return processingEnv.getElementUtils().getBinaryName(type).toString();
+	}
+
+	private @Nullable String superclassName(TypeElement type) {
+		if (type.getKind().isInterface()) {
+			// interfaces have Object as superclass in class file
+			return OBJECT_CLASS_NAME;
+		}
+		return typeName(type.getSuperclass());
+	}
+
+	private ImmutableList<String> interfaceNames(TypeElement type) {
+		ImmutableList.Builder<String> result = ImmutableList.builder();
+		for (TypeMirror interfaceType : type.getInterfaces()) {
+			@Nullable String interfaceName = typeName(interfaceType);
+			if (interfaceName != null) {
+				result.add(interfaceName);
+			}
+		}
+		ImmutableList<String> interfaceNames = result.build();
+		if (type.getKind() == ElementKind.ANNOTATION_TYPE && !interfaceNames.contains(ANNOTATION_CLASS_NAME)) {
+			return ImmutableList.<String>builder().addAll(interfaceNames).add(ANNOTATION_CLASS_NAME).build();
+		}
+		return interfaceNames;
+	}
+
+	private ImmutableSet<String> annotationTypeNames(TypeElement type) {
+		ImmutableSet.Builder<String> result = ImmutableSet.builder();
+		addAnnotationTypeNames(type, result);
+		return result.build();
+	}
+
+	private ImmutableSet<String> memberAnnotationTypeNames(TypeElement type) {
+		ImmutableSet.Builder<String> result = ImmutableSet.builder();
+		for (Element member : type.getEnclosedElements()) {
+			switch (member.getKind()) {
+				case FIELD:
+				case ENUM_CONSTANT:
+					addAnnotationTypeNames(member, result);
+					break;
+				case METHOD:
+				case CONSTRUCTOR:
+					addAnnotationTypeNames(member, result);
+					for (VariableElement parameter : ((ExecutableElement) member).getParameters()) {
+						addAnnotationTypeNames(parameter, result);
+					}
+					break;
+				default:
+					// nested types have their own class files
+					break;
+			}
+		}
+		return result.build();
+	}
+
+	private void addAnnotationTypeNames(Element element, ImmutableSet.Builder<String> result) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			@Nullable Retention retention = annotationType.getAnnotation(Retention.class);
+			// only runtime-visible annotations are present in class file attribute read by queries
+			if (retention != null && retention.value() == RetentionPolicy.RUNTIME) {
+				result.add(binaryName(annotationType));
+			}
+		}
+	}
+
+	private @Nullable String typeName(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		return binaryName((TypeElement) ((DeclaredType) type).asElement());
+	}
+
+	/*
+	 * Flags are the ones compiler writes to class file. Modifiers of element include implicit ones, like final of
+	 * records and enums without constant bodies, but not abstract of enums that leave methods to their constants.
+	 */
+	private int accessFlags(TypeElement type) {
+		Set<javax.lang.model.element.Modifier> modifiers = type.getModifiers();
+		int result = 0;
+		// nested classes are public in class file if they are public or protected in source
+		if (modifiers.contains(javax.lang.model.element.Modifier.PUBLIC)
+			|| modifiers.contains(javax.lang.model.element.Modifier.PROTECTED)) {
+			result |= Modifier.PUBLIC;
+		}
+		if (modifiers.contains(javax.lang.model.element.Modifier.FINAL)) {
+			result |= Modifier.FINAL;
+		}
+		if (modifiers.contains(javax.lang.model.element.Modifier.ABSTRACT)) {
+			result |= Modifier.ABSTRACT;
+		}
+		switch (type.getKind()) {
+			case ANNOTATION_TYPE:
+				result |= Modifier.INTERFACE | Modifier.ABSTRACT | ACCESS_ANNOTATION;
+				break;
+			case INTERFACE:
+				result |= Modifier.INTERFACE | Modifier.ABSTRACT;
+				break;
+			case ENUM:
+				result |= ACCESS_SUPER | ACCESS_ENUM;
+				if (hasUnimplementedMethod(type)) {
+					result |= Modifier.ABSTRACT;
+				}
+				break;
+			default:
+				result |= ACCESS_SUPER;
+				break;
+		}
+		return result;
+	}
+
+	private boolean hasUnimplementedMethod(TypeElement type) {
+		List<ExecutableElement> methods =
+			ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type));
+		for (ExecutableElement method : methods) {
+			if (isAbstract(method) && !isImplemented(method, methods, type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isImplemented(ExecutableElement method, List<ExecutableElement> methods, TypeElement type) {
+		Elements elements = processingEnv.getElementUtils();
+		for (ExecutableElement candidate : methods) {
+			if (!isAbstract(candidate) && elements.overrides(candidate, method, type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isAbstract(Element element) {
+		return element.getModifiers().contains(javax.lang.model.element.Modifier.ABSTRACT);
+	}
+}
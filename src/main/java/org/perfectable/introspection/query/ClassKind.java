@@ -0,0 +1,51 @@
+package org.perfectable.introspection.query;
+
+import java.lang.reflect.Modifier;
+import java.util.Optional;
+
+/**
+ * Kind of class, as declared in source.
+ *
+ * <p>Kind is determined from access flags and superclass recorded in class file, so it can be checked without
+ * loading the class.
+ */
+public enum ClassKind {
+	/** Class that is not enum or record, including abstract classes and bodies of enum constants. */
+	CLASS,
+
+	/** Interface that is not annotation type. */
+	INTERFACE,
+
+	/** Annotation type. */
+	ANNOTATION,
+
+	/** Enum type, as returned by {@link Class#isEnum}. */
+	ENUM,
+
+	/** Record class. */
+	RECORD;
+
+	private static final int ACCESS_ANNOTATION = 0x2000;
+	private static final int ACCESS_ENUM = 0x4000;
+	private static final String ENUM_CLASS_NAME = Enum.class.getName();
+	private static final String RECORD_CLASS_NAME = "java.lang.Record";
+
+	static ClassKind of(ClassFileHeader header) {
+		int accessFlags = header.accessFlags();
+		if ((accessFlags & ACCESS_ANNOTATION) != 0) {
+			return ANNOTATION;
+		}
+		if ((accessFlags & Modifier.INTERFACE) != 0) {
+			return INTERFACE;
+		}
+		Optional<String> superclassName = header.superclassName();
+		// bodies of enum constants also have enum flag, but extend their enum instead of Enum itself
+		if ((accessFlags & ACCESS_ENUM) != 0 && superclassName.equals(Optional.of(ENUM_CLASS_NAME))) {
+			return ENUM;
+		}
+		if (superclassName.equals(Optional.of(RECORD_CLASS_NAME))) {
+			return RECORD;
+		}
+		return CLASS;
+	}
+}
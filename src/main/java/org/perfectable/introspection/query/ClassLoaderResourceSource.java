@@ -0,0 +1,87 @@
+package org.perfectable.introspection.query;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+import com.google.common.collect.ImmutableList;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+final class ClassLoaderResourceSource extends UrlResourceSource {
+	private static final String ARCHIVE_PROTOCOL = "jar";
+	private static final String ARCHIVE_SEPARATOR = "!/";
+	private static final String NESTED_PROTOCOL_PREFIX = "nested:";
+	private static final String NESTED_SEPARATOR = "/!";
+	private static final String FILE_PROTOCOL_PREFIX = "file:";
+
+	private final ClassLoader classLoader;
+
+	public static ClassLoaderResourceSource of(ClassLoader classLoader) {
+		return new ClassLoaderResourceSource(classLoader, ScanConfiguration.DEFAULT);
+	}
+
+	private ClassLoaderResourceSource(ClassLoader classLoader, ScanConfiguration configuration) {
+		super(configuration);
+		this.classLoader = classLoader;
+	}
+
+	@Override
+	protected Object rootsKey() {
+		// URL equality might resolve host names, so their string forms are compared instead
+		ImmutableList.Builder<String> locations = ImmutableList.builder();
+		forEachUrl(url -> locations.add(url.toExternalForm()));
+		return locations.build();
+	}
+
+	@Override
+	protected void generatePaths(Consumer<Path> pathAction) {
+		forEachUrl(url -> {
+			try {
+				Path path = elementPath(url);
+				pathAction.accept(path);
+			}
+			catch (URISyntaxException e) {
+				throw new AssertionError(e);
+			}
+		});
+	}
+
+	private void forEachUrl(Consumer<URL> urlAction) {
+		@Nullable ClassLoader currentClassLoader = classLoader;
+		while (currentClassLoader != null) {
+			if (currentClassLoader instanceof URLClassLoader) {
+				URLClassLoader urlClassLoader = (URLClassLoader) currentClassLoader;
+				for (URL url : urlClassLoader.getURLs()) {
+					urlAction.accept(url);
+				}
+			}
+			currentClassLoader = currentClassLoader.getParent();
+		}
+	}
+
+	private static Path elementPath(URL url) throws URISyntaxException {
+		if (!ARCHIVE_PROTOCOL.equals(url.getProtocol())) {
+			return Paths.get(url.toURI());
+		}
+		// location inside archive, like library nested in executable archive, is listed as part of outer archive
+		String location = url.getFile();
+		if (location.startsWith(NESTED_PROTOCOL_PREFIX)) {
+			String nestedLocation = location.substring(NESTED_PROTOCOL_PREFIX.length());
+			int separatorIndex = nestedLocation.indexOf(NESTED_SEPARATOR);
+			String archivePath = separatorIndex < 0 ? nestedLocation : nestedLocation.substring(0, separatorIndex);
+			return Paths.get(new URI(FILE_PROTOCOL_PREFIX + archivePath));
+		}
+		int separatorIndex = location.indexOf(ARCHIVE_SEPARATOR);
+		String archiveLocation = separatorIndex < 0 ? location : location.substring(0, separatorIndex);
+		return Paths.get(new URI(archiveLocation));
+	}
+
+	@Override
+	protected UrlResourceSource withConfiguration(ScanConfiguration newConfiguration) {
+		return new ClassLoaderResourceSource(classLoader, newConfiguration);
+	}
+}
@@ -0,0 +1,81 @@
+package org.perfectable.introspection.query;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+import com.google.common.base.Splitter;
+
+final class ClassPathResourceSource extends UrlResourceSource {
+	static final ClassPathResourceSource INSTANCE = new ClassPathResourceSource(ScanConfiguration.DEFAULT);
+
+	private static final String CLASS_PATH_PROPERTY = "java.class.path";
+	private static final Splitter CLASSPATH_SPLITTER = Splitter.on(':');
+
+	private static final String WILDCARD = "*";
+	private static final String CURRENT_DIRECTORY = "";
+	private static final String JAR_SUFFIX = ".jar";
+	private static final String UPPERCASE_JAR_SUFFIX = ".JAR";
+
+	private ClassPathResourceSource(ScanConfiguration configuration) {
+		super(configuration);
+	}
+
+	@Override
+	protected Object rootsKey() {
+		// wildcards are expanded only when class path changes, as launcher does it once on startup
+		return String.valueOf(System.getProperty(CLASS_PATH_PROPERTY));
+	}
+
+	@Override
+	protected void generatePaths(Consumer<Path> pathAction) {
+		String classPathString = System.getProperty(CLASS_PATH_PROPERTY);
+		Iterable<String> classPathEntries = CLASSPATH_SPLITTER.split(classPathString);
+		for (String entry : classPathEntries) {
+			generateEntryPaths(entry, pathAction);
+		}
+	}
+
+	@Override
+	protected UrlResourceSource withConfiguration(ScanConfiguration newConfiguration) {
+		return new ClassPathResourceSource(newConfiguration);
+	}
+
+	static void generateEntryPaths(String entry, Consumer<Path> pathAction) {
+		if (!isWildcard(entry)) {
+			pathAction.accept(Paths.get(entry));
+			return;
+		}
+		String directoryName = entry.equals(WILDCARD) ?
+			CURRENT_DIRECTORY : entry.substring(0, entry.length() - WILDCARD.length());
+		// same rules as in launcher: only jars directly in directory, in order in which directory lists them
+		try (DirectoryStream<Path> jars =
+				 Files.newDirectoryStream(Paths.get(directoryName), ClassPathResourceSource::isJar)) {
+			jars.forEach(pathAction);
+		}
+		catch (IOException ignored) {
+			// launcher expands unreadable directory to no entries
+		}
+	}
+
+	private static boolean isWildcard(String entry) {
+		if (!entry.endsWith(WILDCARD)) {
+			return false;
+		}
+		if (entry.length() == WILDCARD.length()) {
+			return true;
+		}
+		char separator = entry.charAt(entry.length() - WILDCARD.length() - 1);
+		return separator == '/' || separator == File.separatorChar;
+	}
+
+	static boolean isJar(Path candidate) {
+		String fileName = String.valueOf(candidate.getFileName());
+		return (fileName.endsWith(JAR_SUFFIX) || fileName.endsWith(UPPERCASE_JAR_SUFFIX))
+			&& !Files.isDirectory(candidate);
+	}
+}
@@ -1,39 +1,20 @@
-package org.perfectable.introspection.query; // SUPPRESS FILE FileLength
+package org.perfectable.introspection.query;
 
-import java.io.IOException;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.AnnotatedElement;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
+import java.lang.reflect.Modifier;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.Optional;
-import java.util.Set;
-import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.jar.Attributes;
-import java.util.jar.JarFile;
-import java.util.jar.Manifest;
 import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
 
-import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Ordering;
-import javassist.ClassPool;
-import javassist.CtClass;
-import javassist.LoaderClassPath;
-import javassist.NotFoundException;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -52,7 +33,7 @@ import static java.util.Objects.requireNonNull;
  * files. At this point it filters for package and class names. These are the fastest filters that can immeasurably
  * speed up querying, and it is suggested that all queries should have at least one of these filters.
  *
- * <p>Then, it uses Javassist classfile reading, which only parses the classfile, without initializing it. At this
+ * <p>Then, it reads class file header, which only parses the class file structure, without loading it. At this
  * point, the query can filter for things like checking if annotation is present or if interface is implemented.
  * These filters are much faster that conventional classloading (because class dependencies don't have to be loaded and
  * no class initialization actually occurs).
@@ -61,6 +42,10 @@ import static java.util.Objects.requireNonNull;
  *
  * <p>If unrestricted, this query is very slow, as it will load all classes either in classloader or on classpath!
  *
+ * <p>Executable archives that nest libraries inside, like ones built by Spring Boot, are scanned in place, without
+ * extracting nested archives. Classes in such archive are visible only to class loader that launched it, so the query
+ * should be created with {@link #of(ClassLoader)} for this loader, not with {@link #system()}.
+ *
  * <p>Example usage, which registers all classes in package "org.perfectable" that implements
  * {@link java.io.Serializable} and are annotated by javax.annotation.Generated:
  * <pre>
@@ -77,25 +62,41 @@ import static java.util.Objects.requireNonNull;
  */
 public final class ClassQuery<C> extends AbstractQuery<Class<? extends C>, ClassQuery<C>> {
 	private static final Predicate<? super String> DEFAULT_CLASSNAME_FILTER = className -> true;
-	private static final Predicate<? super CtClass> DEFAULT_PRE_LOAD_FILTER = ctClass -> true;
+	private static final ImmutableSet<String> DEFAULT_SUPERTYPE_NAMES = ImmutableSet.of();
+	private static final Predicate<? super ClassFileHeader> DEFAULT_PRE_LOAD_FILTER = header -> true;
 	private static final Predicate<? super Class<?>> DEFAULT_POST_LOAD_FILTER = type -> true;
 	private static final Comparator<? super Class<?>> DEFAULT_SORTING = Ordering.allEqual();
+	private static final ScanListener DEFAULT_LISTENER = statistics -> { };
+
+	private static final int SEQUENTIAL_LOADING = 1;
 
 	private static final String CLASS_FILE_SUFFIX = ".class";
 
+	private static final LoadFailureCache SYSTEM_LOAD_FAILURES =
+		LoadFailureCache.of(ClassLoader.getSystemClassLoader());
+
 	private static final ClassQuery<Object> SYSTEM =
-		new ClassQuery<>(Object.class, ClassPathResourceSource.INSTANCE, ClassPool.getDefault(),
-			ClassQuery::loadSystemClass, DEFAULT_CLASSNAME_FILTER, DEFAULT_PRE_LOAD_FILTER, DEFAULT_POST_LOAD_FILTER,
-			DEFAULT_SORTING);
+		new ClassQuery<>(Object.class, ClassPathResourceSource.INSTANCE, ClassFileSource.system(),
+			ClassQuery::loadSystemClass, SYSTEM_LOAD_FAILURES, DEFAULT_CLASSNAME_FILTER, DEFAULT_SUPERTYPE_NAMES,
+			DEFAULT_PRE_LOAD_FILTER, DEFAULT_POST_LOAD_FILTER, DEFAULT_SORTING, SEQUENTIAL_LOADING, DEFAULT_LISTENER);
+
+	private static final ClassQuery<Object> MODULES =
+		new ClassQuery<>(Object.class, ModuleResourceSource.INSTANCE, ClassFileSource.system(),
+			ClassQuery::loadSystemClass, SYSTEM_LOAD_FAILURES, DEFAULT_CLASSNAME_FILTER, DEFAULT_SUPERTYPE_NAMES,
+			DEFAULT_PRE_LOAD_FILTER, DEFAULT_POST_LOAD_FILTER, DEFAULT_SORTING, SEQUENTIAL_LOADING, DEFAULT_LISTENER);
 
 	private final ResourceSource resources;
-	private final ClassPool classPool;
+	private final ClassFileSource classFiles;
 	private final TypeLoader loader;
+	private final LoadFailureCache loadFailures;
 	private final Class<? extends C> castedType;
 	private final Predicate<? super String> classNameFilter;
-	private final Predicate<? super CtClass> preLoadFilter;
+	private final ImmutableSet<String> supertypeNames;
+	private final Predicate<? super ClassFileHeader> preLoadFilter;
 	private final Predicate<? super Class<? extends C>> postLoadFilter;
 	private final Comparator<? super Class<? extends C>> sorting;
+	private final int loadingParallelism;
+	private final ScanListener listener;
 
 	/**
 	 * Queries for all classes reachable from declared classpath.
@@ -106,6 +107,21 @@ public final class ClassQuery<C> extends AbstractQuery<Class<? extends C>, Class
 		return ClassQuery.SYSTEM;
 	}
 
+	/**
+	 * Queries for classes in modules of runtime image and on module path.
+	 *
+	 * <p>This query doesn't depend on classpath or class loader types, so it can search modules of the platform and
+	 * of modular applications. Classes are loaded by system class loader, which sees all modules of boot layer.
+	 *
+	 * <p>Package filters are applied to module selection, so that modules of runtime image that don't contain
+	 * matching packages are skipped entirely. On runtimes without modules, only module path is scanned.
+	 *
+	 * @return query for classes in modules
+	 */
+	public static ClassQuery<Object> modules() {
+		return ClassQuery.MODULES;
+	}
+
 	/**
 	 * Queries for classes reachable by specified classloader.
 	 *
@@ -114,28 +130,33 @@ public final class ClassQuery<C> extends AbstractQuery<Class<? extends C>, Class
 	 */
 	public static ClassQuery<Object> of(ClassLoader loader) {
 		requireNonNull(loader);
-		ClassPool classPool1 = new ClassPool();
-		classPool1.appendClassPath(new LoaderClassPath(loader));
-		return new ClassQuery<>(Object.class, ClassLoaderResourceSource.of(loader), classPool1,
-			loader::loadClass, DEFAULT_CLASSNAME_FILTER, DEFAULT_PRE_LOAD_FILTER, DEFAULT_POST_LOAD_FILTER,
-			DEFAULT_SORTING);
+		return new ClassQuery<>(Object.class, ClassLoaderResourceSource.of(loader), ClassFileSource.of(loader),
+			loader::loadClass, LoadFailureCache.of(loader), DEFAULT_CLASSNAME_FILTER, DEFAULT_SUPERTYPE_NAMES,
+			DEFAULT_PRE_LOAD_FILTER, DEFAULT_POST_LOAD_FILTER, DEFAULT_SORTING, SEQUENTIAL_LOADING, DEFAULT_LISTENER);
 	}
 
 	@SuppressWarnings("ParameterNumber")
 	private ClassQuery(Class<? extends C> castedType,
-					   ResourceSource resources, ClassPool classPool,
-					   TypeLoader loader, Predicate<? super String> classNameFilter,
-					   Predicate<? super CtClass> preLoadFilter,
+					   ResourceSource resources, ClassFileSource classFiles,
+					   TypeLoader loader, LoadFailureCache loadFailures,
+					   Predicate<? super String> classNameFilter,
+					   ImmutableSet<String> supertypeNames,
+					   Predicate<? super ClassFileHeader> preLoadFilter,
 					   Predicate<? super Class<? extends C>> postLoadFilter,
-					   Comparator<? super Class<? extends C>> sorting) {
+					   Comparator<? super Class<? extends C>> sorting,
+					   int loadingParallelism, ScanListener listener) {
 		this.castedType = castedType;
 		this.resources = resources;
-		this.classPool = classPool;
+		this.classFiles = classFiles;
 		this.loader = loader;
+		this.loadFailures = loadFailures;
 		this.classNameFilter = classNameFilter;
+		this.supertypeNames = supertypeNames;
 		this.preLoadFilter = preLoadFilter;
 		this.postLoadFilter = postLoadFilter;
 		this.sorting = sorting;
+		this.loadingParallelism = loadingParallelism;
+		this.listener = listener;
 	}
 
 	/**
@@ -148,11 +169,10 @@ public final class ClassQuery<C> extends AbstractQuery<Class<? extends C>, Class
 	 * @return query for classes with specific supertype
 	 */
 	public <X extends C> ClassQuery<X> subtypeOf(Class<? extends X> supertype) {
-		@SuppressWarnings("unchecked")
-		Predicate<? super CtClass> newPreLoadFilter =
-			((Predicate<CtClass>) preLoadFilter).and(SubtypePredicate.of(supertype));
-		return new ClassQuery<X>(supertype, resources, classPool, loader,
-			classNameFilter, newPreLoadFilter, postLoadFilter, sorting);
+		ImmutableSet<String> newSupertypeNames = ImmutableSet.<String>builder()
+			.addAll(supertypeNames).add(supertype.getName()).build();
+		return new ClassQuery<X>(supertype, resources, classFiles, loader, loadFailures,
+			classNameFilter, newSupertypeNames, preLoadFilter, postLoadFilter, sorting, loadingParallelism, listener);
 	}
 
 	/**
@@ -164,7 +184,12 @@ public final class ClassQuery<C> extends AbstractQuery<Class<? extends C>, Class
 	 * @return query that returns classes in specified package
 	 */
 	public ClassQuery<C> inPackage(String filteredPackageName) {
-		return withClassNameFilter(PackageNamePredicate.of(filteredPackageName));
+		@SuppressWarnings("unchecked")
+		Predicate<? super String> newClassNameFilter =
+			((Predicate<String>) classNameFilter).and(PackageNamePredicate.of(filteredPackageName));
+		ResourceSource newResources = resources.withPathPrefix(filteredPackageName.replace('.', '/'));
+		return new ClassQuery<>(castedType, newResources, classFiles, loader, loadFailures,
+			newClassNameFilter, supertypeNames, preLoadFilter, postLoadFilter, sorting, loadingParallelism, listener);
 	}
 
 	/**
@@ -213,8 +238,8 @@ public final class ClassQuery<C> extends AbstractQuery<Class<? extends C>, Class
 		@SuppressWarnings("unchecked")
 		Predicate<? super Class<? extends C>> newPostLoadFilter =
 			((Predicate<Class<? extends C>>) postLoadFilter).and(filter);
-		return new ClassQuery<C>(castedType, resources, classPool, loader,
-			classNameFilter, preLoadFilter, newPostLoadFilter, sorting);
+		return new ClassQuery<C>(castedType, resources, classFiles, loader, loadFailures,
+			classNameFilter, supertypeNames, preLoadFilter, newPostLoadFilter, sorting, loadingParallelism, listener);
 	}
 
 	@Override
@@ -222,8 +247,8 @@ public final class ClassQuery<C> extends AbstractQuery<Class<? extends C>, Class
 		@SuppressWarnings("unchecked")
 		Comparator<@Nullable Object> castedComparator = (Comparator<@Nullable Object>) nextComparator;
 		Comparator<? super Class<? extends C>> newSorting = sorting.thenComparing(castedComparator);
-		return new ClassQuery<C>(castedType, resources, classPool, loader,
-			classNameFilter, preLoadFilter, postLoadFilter, newSorting);
+		return new ClassQuery<C>(castedType, resources, classFiles, loader, loadFailures,
+			classNameFilter, supertypeNames, preLoadFilter, postLoadFilter, newSorting, loadingParallelism, listener);
 	}
 
 	/**
@@ -235,7 +260,7 @@ public final class ClassQuery<C> extends AbstractQuery<Class<? extends C>, Class
 	 * @return query that returns only classes that have specific annotation
 	 */
 	public ClassQuery<C> annotatedWith(Class<? extends Annotation> annotation) {
-		return annotatedWith(AnnotationFilter.single(annotation));
+		return withPreLoadFilter(AnnotationPresencePredicate.of(annotation, classFiles));
 	}
 
 	/**
@@ -247,26 +272,262 @@ public final class ClassQuery<C> extends AbstractQuery<Class<? extends C>, Class
 	 * @return query that returns classes matching specified filter
 	 */
 	public ClassQuery<C> annotatedWith(AnnotationFilter annotationFilter) {
-		return withPreLoadFilter(AnnotationPredicate.of(annotationFilter));
+		return withPreLoadFilter(AnnotationPredicate.of(annotationFilter, classFiles));
+	}
+
+	/**
+	 * Restricts query to classes that declare field, method or constructor annotated with specified annotation, or
+	 * which method or constructor has parameter annotated with it.
+	 *
+	 * <p>Only members declared by the class itself are considered, not inherited ones. Annotations are found in
+	 * class files, so classes without such member are never loaded. To find the members themselves, use
+	 * {@link FieldQuery} or {@link MethodQuery} on returned classes.
+	 *
+	 * @param annotation annotation that must be present on some member of class to be returned
+	 * @return query that returns only classes that have member with specific annotation
+	 */
+	public ClassQuery<C> withMemberAnnotatedWith(Class<? extends Annotation> annotation) {
+		return withPreLoadFilter(MemberAnnotationPresencePredicate.of(annotation, classFiles));
+	}
+
+	/**
+	 * Restricts query to classes that have specified modifier on them.
+	 *
+	 * <p>Use {@link Modifier} to select modifiers. When multiple modifier bits are combined, class must have all of
+	 * them. Modifiers are checked on access flags from class file, so classes without them are never loaded. Class
+	 * file doesn't record private, protected and static modifiers of nested classes, so these will never match.
+	 *
+	 * @param requiredModifier modifier bits that must all be present on class
+	 * @return query that returns only classes with modifiers that match provided
+	 */
+	public ClassQuery<C> requiringModifier(int requiredModifier) {
+		return withPreLoadFilter(ModifierPredicate.requiring(requiredModifier));
+	}
+
+	/**
+	 * Restricts query to classes that do not have specified modifier on them.
+	 *
+	 * <p>Use {@link Modifier} to select modifiers. When multiple modifier bits are combined, class must have none of
+	 * them. Modifiers are checked on access flags from class file, so classes with them are never loaded. For
+	 * example, excluding {@link Modifier#ABSTRACT} selects only concrete classes, without loading any interface or
+	 * abstract class.
+	 *
+	 * @param excludedModifier modifier bits that must not be present on class, none of them
+	 * @return query that returns only classes without modifiers that match provided
+	 */
+	public ClassQuery<C> excludingModifier(int excludedModifier) {
+		return withPreLoadFilter(ModifierPredicate.excluding(excludedModifier));
+	}
+
+	/**
+	 * Restricts query to classes of specified kind.
+	 *
+	 * <p>Kind is determined from class file, so classes of other kinds are never loaded.
+	 *
+	 * @param kind kind of classes to return
+	 * @return query that returns only classes of specified kind
+	 */
+	public ClassQuery<C> ofKind(ClassKind kind) {
+		return withPreLoadFilter(KindPredicate.of(kind));
+	}
+
+	/**
+	 * Uses persistent index of classpath archives stored in specified directory.
+	 *
+	 * <p>Listing of each archive (jar) is stored in the index, keyed by its path, size and modification time. Queries
+	 * using the same index directory will read listings of unchanged archives from it instead of opening them, and
+	 * will only rebuild listings of archives that changed. Directories on classpath are always traversed.
+	 *
+	 * <p>Index directory is created if it doesn't exist. Failures to read or write index are silently ignored, and
+	 * the archive is listed directly.
+	 *
+	 * @param indexDirectory directory that holds the index
+	 * @return query that returns the same classes, but reads classpath archives through index
+	 */
+	public ClassQuery<C> indexedIn(Path indexDirectory) {
+		requireNonNull(indexDirectory);
+		return new ClassQuery<>(castedType, resources.indexedIn(indexDirectory), classFiles, loader,
+			loadFailures, classNameFilter, supertypeNames, preLoadFilter, postLoadFilter, sorting, loadingParallelism,
+			listener);
+	}
+
+	/**
+	 * Keeps listings of classpath directories in memory, updated by file system notifications.
+	 *
+	 * <p>Directory is walked only when it's scanned for the first time. Later scans, by this or any other watching
+	 * query, only apply changes that file system reported since previous scan. This speeds up repeated searches in
+	 * directories that change rarely, like plugin directories, even if query is created anew each time.
+	 *
+	 * <p>Notifications are delivered asynchronously, so changes made right before scan might only be seen by the
+	 * next one. Directories stay watched while any query that scanned them, derived from this one or another
+	 * watching query, is reachable. Archives on classpath are not affected.
+	 *
+	 * @return query that returns the same classes, but keeps directory listings up to date instead of walking them
+	 */
+	public ClassQuery<C> watchingDirectories() {
+		return new ClassQuery<>(castedType, resources.watchingDirectories(), classFiles, loader,
+			loadFailures, classNameFilter, supertypeNames, preLoadFilter, postLoadFilter, sorting, loadingParallelism,
+			listener);
+	}
+
+	/**
+	 * Lists classpath elements concurrently.
+	 *
+	 * <p>Jars, directory trees and jars linked by manifest {@code Class-Path} attribute are listed at the same time,
+	 * by at most {@code parallelism} threads, which are created for each query execution. Results are then merged
+	 * in classpath order, so they are the same as when scanning sequentially. Elements are listed only a few ahead
+	 * of the one being scanned, so operations like {@link #option} or {@link #isPresent} that stop early don't
+	 * list whole classpath.
+	 *
+	 * <p>This gives speedup for classpath with many elements, especially if reading them is slow.
+	 *
+	 * @param parallelism maximum number of elements listed at the same time
+	 * @return query that returns the same classes, but scans classpath in parallel
+	 */
+	public ClassQuery<C> scannedInParallel(int parallelism) {
+		checkArgument(parallelism > 0, "Parallelism must be positive, was %s", parallelism);
+		return new ClassQuery<>(castedType, resources.scannedInParallel(parallelism), classFiles, loader,
+			loadFailures, classNameFilter, supertypeNames, preLoadFilter, postLoadFilter, sorting, loadingParallelism,
+			listener);
+	}
+
+	/**
+	 * Loads classes concurrently.
+	 *
+	 * <p>Classes that passed all filters that don't require loading are loaded by at most {@code parallelism}
+	 * threads, which are created for each query execution. Results are returned in the same order as when loading
+	 * sequentially, and classes that cannot be loaded are skipped, as usual.
+	 *
+	 * <p>This gives speedup when loading of found classes dominates the query, for example when they have
+	 * expensive dependencies.
+	 *
+	 * @param parallelism maximum number of classes loaded at the same time
+	 * @return query that returns the same classes, but loads them in parallel
+	 */
+	public ClassQuery<C> loadedInParallel(int parallelism) {
+		checkArgument(parallelism > 0, "Parallelism must be positive, was %s", parallelism);
+		return new ClassQuery<>(castedType, resources, classFiles, loader, loadFailures,
+			classNameFilter, supertypeNames, preLoadFilter, postLoadFilter, sorting, parallelism, listener);
+	}
+
+	/**
+	 * Reports statistics of each execution of the query to specified listener.
+	 *
+	 * <p>For each classpath element, listener receives time spent listing it, number of its entries, number of bytes
+	 * of its class files read and number of its classes that were selected for loading and loaded. It also receives
+	 * number of classes that passed each stage of the query, which shows how selective each restriction is.
+	 *
+	 * <p>Statistics are reported when stream of results is exhausted or closed. Collecting them adds some overhead
+	 * to the query, so this should be used for diagnostics.
+	 *
+	 * <p>Listener replaces any listener registered previously on this query.
+	 *
+	 * @param scanListener listener that will receive statistics
+	 * @return query that returns the same classes, but reports statistics of executions
+	 */
+	public ClassQuery<C> reportingTo(ScanListener scanListener) {
+		requireNonNull(scanListener);
+		return new ClassQuery<>(castedType, resources, classFiles, loader, loadFailures,
+			classNameFilter, supertypeNames, preLoadFilter, postLoadFilter, sorting, loadingParallelism,
+			scanListener);
+	}
+
+	/**
+	 * Lists classes that could not be loaded, with reason of failure.
+	 *
+	 * <p>Classes that fail to load are skipped by the query. They are remembered for the class loader of the query,
+	 * so that all queries, and {@link ClassDescriptor#load} of their descriptors, that load classes with the same
+	 * loader skip them without another attempt to load. Number of remembered failures is bounded, and each is
+	 * forgotten after some time, or when {@link #clearLoadFailures} is called.
+	 *
+	 * <p>This method is intended for diagnostics, for example to find out why expected class is missing in results.
+	 *
+	 * @return names of classes that failed to load, mapped to class name and message of exception or error thrown
+	 *     by loading
+	 */
+	public ImmutableMap<String, String> loadFailures() {
+		return loadFailures.failures();
+	}
+
+	/**
+	 * Forgets classes that could not be loaded by the class loader of this query.
+	 *
+	 * <p>This affects all queries that load classes with the same loader. Classes that failed before will be loaded
+	 * again by next query that finds them. This should be used when failure is no longer expected, for example
+	 * after missing dependency was made available to the loader.
+	 */
+	public void clearLoadFailures() {
+		loadFailures.clear();
+	}
+
+	/**
+	 * Changes this query to return descriptors of found classes, without loading them.
+	 *
+	 * <p>Returned query applies all restrictions of this query that work on class names and unloaded classes, and
+	 * returns {@link ClassDescriptor} for each class that matches them. Found classes can be loaded explicitly with
+	 * {@link ClassDescriptor#load}.
+	 *
+	 * <p>Restrictions on loaded classes, added by {@link #filter}, and sorting cannot be applied without loading
+	 * classes, so this query must not have any.
+	 *
+	 * @return query that returns descriptors of found classes
+	 * @throws IllegalStateException when this query has restrictions or sorting that require loaded classes
+	 */
+	public ClassDescriptorQuery<C> descriptors() {
+		checkState(postLoadFilter == DEFAULT_POST_LOAD_FILTER && sorting == DEFAULT_SORTING,
+			"Query with filters or sorting of loaded classes cannot return descriptors");
+		return ClassDescriptorQuery.of(this::containsDescriptor, () -> {
+			ScanMonitor monitor = createMonitor();
+			ClassFileSource monitoredClassFiles = classFiles.monitoredBy(monitor);
+			Stream<ClassDescriptor<C>> descriptors = preLoadFiltered(monitor, monitoredClassFiles)
+				.map(monitoredClassFiles::header)
+				.flatMap(com.google.common.collect.Streams::stream)
+				.map(header -> ClassDescriptor.of(header, classFiles, loader, loadFailures, castedType));
+			return monitor.reportingOnCompletion(descriptors);
+		});
 	}
 
 	@Override
 	public Stream<Class<? extends C>> stream() {
-		Stream<String> allClassesNames = resources.entries()
-			.filter(ClassQuery::isClass)
-			.map(ClassQuery::getClassName);
-		Stream<String> classNameFiltered = classNameFilter == DEFAULT_CLASSNAME_FILTER ?
-			allClassesNames : allClassesNames.filter(classNameFilter);
-		Stream<String> preLoadFiltered = preLoadFilter == DEFAULT_PRE_LOAD_FILTER ?
-			classNameFiltered : classNameFiltered.map(this::preload).filter(preLoadFilter).map(CtClass::getName);
-		Stream<Class<? extends C>> loadedClasses = preLoadFiltered
-			.map(this::load)
-			.flatMap(com.google.common.collect.Streams::stream);
+		ScanMonitor monitor = createMonitor();
+		Stream<String> preLoadFiltered = preLoadFiltered(monitor, classFiles.monitoredBy(monitor));
+		Stream<Optional<Class<? extends C>>> loadResults = loadingParallelism == SEQUENTIAL_LOADING ?
+			preLoadFiltered.map(this::load) : ParallelLoading.load(preLoadFiltered, this::load, loadingParallelism);
+		Stream<Class<? extends C>> loadedClasses = loadResults
+			.flatMap(com.google.common.collect.Streams::stream)
+			.peek(type -> monitor.classLoaded(type.getName()));
 		Stream<Class<? extends C>> postLoadFiltered = postLoadFilter == DEFAULT_POST_LOAD_FILTER ?
 			loadedClasses : loadedClasses.filter(postLoadFilter);
 		Stream<Class<? extends C>> sorted = sorting == DEFAULT_SORTING ?
 			postLoadFiltered : postLoadFiltered.sorted(sorting);
-		return sorted;
+		return monitor.reportingOnCompletion(sorted
+			.peek(type -> monitor.postLoadFilterPassed(type.getName())));
+	}
+
+	private ScanMonitor createMonitor() {
+		return listener == DEFAULT_LISTENER ? ScanMonitor.NONE : ScanMonitor.reportingTo(listener);
+	}
+
+	private Stream<String> preLoadFiltered(ScanMonitor monitor, ClassFileSource monitoredClassFiles) {
+		Stream<String> allClassesNames = resources.entries(monitor)
+			.filter(ClassQuery::isClass)
+			.map(ClassQuery::getClassName)
+			.peek(monitor::classFound);
+		Stream<String> classNameFiltered = classNameFilter == DEFAULT_CLASSNAME_FILTER ?
+			allClassesNames : allClassesNames.filter(classNameFilter);
+		classNameFiltered = classNameFiltered.peek(monitor::nameFilterPassed);
+		Stream<String> preLoadFiltered;
+		if (!supertypeNames.isEmpty()) {
+			preLoadFiltered = filterSubtypes(classNameFiltered, monitoredClassFiles);
+		}
+		else if (preLoadFilter == DEFAULT_PRE_LOAD_FILTER) {
+			preLoadFiltered = classNameFiltered;
+		}
+		else {
+			preLoadFiltered = classNameFiltered
+				.filter(className -> matchesPreLoadFilter(monitoredClassFiles.header(className)));
+		}
+		return preLoadFiltered.peek(monitor::preLoadFilterPassed);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -282,33 +543,50 @@ public final class ClassQuery<C> extends AbstractQuery<Class<? extends C>, Class
 		if (!DEFAULT_POST_LOAD_FILTER.equals(postLoadFilter) && !postLoadFilter.test(candidateClass)) {
 			return false;
 		}
-		if (!DEFAULT_PRE_LOAD_FILTER.equals(preLoadFilter)) {
-			CtClass preloaded = preload(candidateClass.getName());
-			if (!preLoadFilter.test(preloaded)) {
+		return containsUnloaded(candidateClass.getName());
+	}
+
+	private boolean containsDescriptor(ClassDescriptor<?> candidate) {
+		if (candidate.classLoader() != classFiles.loader()) {
+			return false;
+		}
+		String className = candidate.name();
+		if (!DEFAULT_CLASSNAME_FILTER.equals(classNameFilter) && !classNameFilter.test(className)) {
+			return false;
+		}
+		return containsUnloaded(className);
+	}
+
+	private boolean containsUnloaded(String className) {
+		if (!supertypeNames.isEmpty() || !DEFAULT_PRE_LOAD_FILTER.equals(preLoadFilter)) {
+			TypeHierarchy hierarchy = TypeHierarchy.of(classFiles);
+			if (!subtypeFilter(hierarchy).test(className) || !matchesPreLoadFilter(hierarchy.header(className))) {
 				return false;
 			}
 		}
-		return resources.contains(getClassPath(candidateClass));
+		return resources.contains(getClassPath(className));
 	}
 
 	private ClassQuery<C> withClassNameFilter(Predicate<? super String> additionalClassNameFilter) {
 		@SuppressWarnings("unchecked")
 		Predicate<? super String> newClassNameFilter =
 			((Predicate<String>) classNameFilter).and(additionalClassNameFilter);
-		return new ClassQuery<>(castedType, resources, classPool, loader,
-			newClassNameFilter, preLoadFilter, postLoadFilter, sorting);
+		return new ClassQuery<>(castedType, resources, classFiles, loader, loadFailures,
+			newClassNameFilter, supertypeNames, preLoadFilter, postLoadFilter, sorting, loadingParallelism, listener);
 	}
 
-	private ClassQuery<C> withPreLoadFilter(Predicate<? super CtClass> additionalPreLoadFilter) {
+	private ClassQuery<C> withPreLoadFilter(Predicate<? super ClassFileHeader> additionalPreLoadFilter) {
 		@SuppressWarnings("unchecked")
-		Predicate<? super CtClass> newPreLoadFilter =
-			((Predicate<CtClass>) preLoadFilter).and(additionalPreLoadFilter);
-		return new ClassQuery<>(castedType, resources, classPool, loader,
-			classNameFilter, newPreLoadFilter, postLoadFilter, sorting);
+		Predicate<? super ClassFileHeader> newPreLoadFilter =
+			((Predicate<ClassFileHeader>) preLoadFilter).and(additionalPreLoadFilter);
+		return new ClassQuery<>(castedType, resources, classFiles, loader, loadFailures,
+			classNameFilter, supertypeNames, newPreLoadFilter, postLoadFilter, sorting, loadingParallelism, listener);
 	}
 
 	private static boolean isClass(String path) {
+		// versioned entries of archives that are not multi-release are never loaded as classes
 		return path.endsWith(CLASS_FILE_SUFFIX)
+			&& !path.startsWith(MultiRelease.VERSIONS_DIRECTORY)
 			&& !path.endsWith("package-info.class")
 			&& !path.endsWith("module-info.class");
 	}
@@ -318,31 +596,46 @@ public final class ClassQuery<C> extends AbstractQuery<Class<? extends C>, Class
 		return path.substring(0, classNameEnd).replace('/', '.');
 	}
 
-	private static String getClassPath(Class<?> resolvedClass) {
-		return resolvedClass.getName().replace('.', '/') + CLASS_FILE_SUFFIX;
+	private static String getClassPath(String className) {
+		return className.replace('.', '/') + CLASS_FILE_SUFFIX;
 	}
 
-	private CtClass preload(String className) {
-		try {
-			return classPool.get(className);
-		}
-		catch (NotFoundException e) {
-			throw new AssertionError(e);
-		}
+	private Stream<String> filterSubtypes(Stream<String> classNames, ClassFileSource monitoredClassFiles) {
+		// candidates are resolved as they are reached, so short-circuiting operations stop reading headers
+		TypeHierarchy hierarchy = TypeHierarchy.of(monitoredClassFiles);
+		return classNames
+			.filter(subtypeFilter(hierarchy))
+			.filter(className -> matchesPreLoadFilter(hierarchy.header(className)));
+	}
+
+	private Predicate<String> subtypeFilter(TypeHierarchy hierarchy) {
+		// unresolvable classes are treated as not being subtypes
+		return className -> supertypeNames.stream()
+			.map(supertypeName -> hierarchy.resolve(className, supertypeName))
+			.allMatch(TypeHierarchy.Resolution.SUBTYPE::equals);
+	}
+
+	private boolean matchesPreLoadFilter(Optional<ClassFileHeader> header) {
+		return header.isPresent() && preLoadFilter.test(header.get());
 	}
 
-	@SuppressWarnings("IllegalCatch")
 	private Optional<Class<? extends C>> load(String className) {
+		if (loadFailures.failure(className).isPresent()) {
+			return Optional.empty();
+		}
+		Class<?> loaded;
 		try {
-			Class<? extends C> loaded = loader.load(className)
-				.asSubclass(castedType);
-			return Optional.of(loaded);
+			loaded = loadFailures.load(className, loader);
 		}
-		catch (Throwable e) {
-			// although this should only throw ClassNotFoundException or NoClassDefFoundError,
-			// lot of different exception occurs while loading classes and if it happens, Class is not loadable anyway
+		catch (ClassNotFoundException e) {
+			// failure is recorded by cache
 			return Optional.empty();
 		}
+		// cast failure depends on query, so it is not recorded as load failure
+		if (!castedType.isAssignableFrom(loaded)) {
+			return Optional.empty();
+		}
+		return Optional.of(loaded.asSubclass(castedType));
 	}
 
 	private static Class<?> loadSystemClass(String name) throws ClassNotFoundException {
@@ -366,255 +659,113 @@ public final class ClassQuery<C> extends AbstractQuery<Class<? extends C>, Class
 		}
 	}
 
-	private static final class AnnotationPredicate implements Predicate<CtClass> {
-		private final AnnotationFilter annotationFilter;
-
-		public static AnnotationPredicate of(AnnotationFilter annotationFilter) {
-			return new AnnotationPredicate(annotationFilter);
-		}
+	private static final class ModifierPredicate implements Predicate<ClassFileHeader> {
+		private static final int NO_MODIFIERS = 0;
 
-		private AnnotationPredicate(AnnotationFilter annotationFilter) {
-			this.annotationFilter = annotationFilter;
-		}
+		private final int requiredModifiers;
+		private final int excludedModifiers;
 
-		@Override
-		public boolean test(CtClass preloadedClass) {
-			return annotationFilter.matches(CtClassAnnotatedElementAdapter.adapt(preloadedClass));
+		public static ModifierPredicate requiring(int requiredModifiers) {
+			return new ModifierPredicate(requiredModifiers, NO_MODIFIERS);
 		}
 
-	}
-
-	private static final class SubtypePredicate implements Predicate<CtClass> {
-		private final Class<?> supertype;
-
-		public static SubtypePredicate of(Class<?> supertype) {
-			return new SubtypePredicate(supertype);
+		public static ModifierPredicate excluding(int excludedModifiers) {
+			return new ModifierPredicate(NO_MODIFIERS, excludedModifiers);
 		}
 
-		private SubtypePredicate(Class<?> supertype) {
-			this.supertype = supertype;
+		private ModifierPredicate(int requiredModifiers, int excludedModifiers) {
+			this.requiredModifiers = requiredModifiers;
+			this.excludedModifiers = excludedModifiers;
 		}
 
 		@Override
-		public boolean test(CtClass ctClass) {
-			return ctClass.getName().equals(supertype.getName())
-				|| testSuperclass(ctClass)
-				|| testInterfaces(ctClass);
-		}
-
-		@SuppressWarnings("IllegalCatch")
-		private boolean testSuperclass(CtClass ctClass) {
-			CtClass superclass;
-			try {
-				superclass = ctClass.getSuperclass();
-			}
-			catch (Exception ignored) {
-				return false;
-			}
-			return superclass != null && test(superclass);
+		public boolean test(ClassFileHeader header) {
+			int modifiers = header.modifiers();
+			return (modifiers & requiredModifiers) == requiredModifiers && (modifiers & excludedModifiers) == 0;
 		}
-
-		@SuppressWarnings("IllegalCatch")
-		private boolean testInterfaces(CtClass ctClass) {
-			CtClass[] ctInterfaces;
-			try {
-				ctInterfaces = ctClass.getInterfaces();
-			}
-			catch (Exception ignored) {
-				return false;
-			}
-			for (CtClass ctInterface : ctInterfaces) {
-				if (test(ctInterface)) {
-					return true;
-				}
-			}
-			return false;
-		}
-	}
-
-	@FunctionalInterface
-	private interface TypeLoader {
-		Class<?> load(String typeName) throws ClassNotFoundException;
 	}
 
-	private interface ResourceSource {
-		Stream<String> entries();
+	private static final class KindPredicate implements Predicate<ClassFileHeader> {
+		private final ClassKind kind;
 
-		boolean contains(String candidate);
-	}
-
-	private abstract static class UrlResourceSource implements ResourceSource {
-		public static final Splitter MANIFEST_CLASSPATH_ENTRY_SPLITTER = Splitter.on(" ");
+		public static KindPredicate of(ClassKind kind) {
+			return new KindPredicate(kind);
+		}
 
-		@Override
-		public Stream<String> entries() {
-			Set<Path> visited = new HashSet<>();
-			ImmutableSet.Builder<String> resultBuilder = ImmutableSet.builder();
-			generatePaths(uri -> generateUrlEntry(uri, resultBuilder, visited));
-			return resultBuilder.build().stream();
+		private KindPredicate(ClassKind kind) {
+			this.kind = kind;
 		}
 
 		@Override
-		public boolean contains(String candidate) {
-			return entries().anyMatch(candidate::equals);
+		public boolean test(ClassFileHeader header) {
+			return ClassKind.of(header) == kind;
 		}
+	}
 
-		protected abstract void generatePaths(Consumer<Path> pathAction);
-
-		private static void generateUrlEntry(Path file, ImmutableSet.Builder<String> resultBuilder, Set<Path> visited) {
-			if (visited.contains(file)) {
-				return;
-			}
-			visited.add(file);
-			if (Files.isDirectory(file)) {
-				generateDirectoryEntries(file, resultBuilder);
-			}
-			else {
-				generateJarEntries(file, resultBuilder, visited);
-			}
-		}
+	private static final class AnnotationPresencePredicate implements Predicate<ClassFileHeader> {
+		private final Class<? extends Annotation> annotationType;
+		private final ClassFileSource classFiles;
 
-		private static void generateJarEntries(Path jarPath,
-											   ImmutableSet.Builder<String> resultBuilder,
-											   Set<Path> visited) {
-			@Nullable String manifestClassPath;
-			try (JarFile jarFile = new JarFile(jarPath.toFile())) {
-				manifestClassPath = getManifestClassPathString(jarFile);
-				Streams.from(jarFile.entries())
-					.filter(entry -> !entry.isDirectory())
-					.map(ZipEntry::getName)
-					.forEach(resultBuilder::add);
-			}
-			catch (IOException ignored) {
-				// could not open jar file, probably not jar
-				return;
-			}
-			if (manifestClassPath == null) {
-				return;
-			}
-			for (String manifestEntry : MANIFEST_CLASSPATH_ENTRY_SPLITTER.split(manifestClassPath)) {
-				URI manifestUrl = URI.create(manifestEntry);
-				generateUrlEntry(Paths.get(manifestUrl.getPath()), resultBuilder, visited);
-			}
+		public static AnnotationPresencePredicate of(Class<? extends Annotation> annotationType,
+													 ClassFileSource classFiles) {
+			return new AnnotationPresencePredicate(annotationType, classFiles);
 		}
 
-		private static void generateDirectoryEntries(Path directoryBase, ImmutableSet.Builder<String> resultBuilder) {
-            try {
-				Files.walkFileTree(directoryBase, new ResultAddingFileVisitor(resultBuilder, directoryBase));
-			}
-			catch (IOException e) {
-				throw new AssertionError(e);
-			}
+		private AnnotationPresencePredicate(Class<? extends Annotation> annotationType, ClassFileSource classFiles) {
+			this.annotationType = annotationType;
+			this.classFiles = classFiles;
 		}
 
-		private static @Nullable String getManifestClassPathString(JarFile jarFile) throws IOException {
-			@Nullable Manifest manifest = jarFile.getManifest();
-			if (manifest == null) {
-				return null;
-			}
-			return manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
-		}
-
-		private static class ResultAddingFileVisitor extends SimpleFileVisitor<Path> {
-			private final ImmutableSet.Builder<String> resultBuilder;
-			private final Path basePath;
-
-			ResultAddingFileVisitor(ImmutableSet.Builder<String> resultBuilder, Path basePath) {
-				this.resultBuilder = resultBuilder;
-				this.basePath = basePath;
-			}
-
-			@Override
-			public FileVisitResult visitFile(Path path, BasicFileAttributes basicFileAttributes) {
-				Path relativePath = basePath.relativize(path);
-				resultBuilder.add(relativePath.toString());
-				return FileVisitResult.CONTINUE;
-			}
-		}
-	}
-
-	private static final class ClassPathResourceSource extends UrlResourceSource {
-		static final ClassPathResourceSource INSTANCE = new ClassPathResourceSource();
-
-		private static final Splitter CLASSPATH_SPLITTER = Splitter.on(':');
-
 		@Override
-		protected void generatePaths(Consumer<Path> pathAction) {
-			String classPathString = System.getProperty("java.class.path");
-			Iterable<String> classPathEntries = CLASSPATH_SPLITTER.split(classPathString);
-			for (String entry : classPathEntries) {
-				if (entry.endsWith("*")) {
-					throw new AssertionError("Wild-carded classpath is unsupported");
-				}
-				Path path = Paths.get(entry);
-				pathAction.accept(path);
-			}
+		public boolean test(ClassFileHeader header) {
+			return classFiles.isAnnotatedWith(header, annotationType);
 		}
 	}
 
-	private static final class ClassLoaderResourceSource extends UrlResourceSource {
-		private final ClassLoader classLoader;
+	private static final class MemberAnnotationPresencePredicate implements Predicate<ClassFileHeader> {
+		private final Class<? extends Annotation> annotationType;
+		private final ClassFileSource classFiles;
 
-		public static ClassLoaderResourceSource of(ClassLoader classLoader) {
-			return new ClassLoaderResourceSource(classLoader);
+		public static MemberAnnotationPresencePredicate of(Class<? extends Annotation> annotationType,
+														   ClassFileSource classFiles) {
+			return new MemberAnnotationPresencePredicate(annotationType, classFiles);
 		}
 
-		private ClassLoaderResourceSource(ClassLoader classLoader) {
-			this.classLoader = classLoader;
+		private MemberAnnotationPresencePredicate(Class<? extends Annotation> annotationType,
+												  ClassFileSource classFiles) {
+			this.annotationType = annotationType;
+			this.classFiles = classFiles;
 		}
 
 		@Override
-		protected void generatePaths(Consumer<Path> pathAction) {
-			@Nullable ClassLoader currentClassLoader = classLoader;
-			while (currentClassLoader != null) {
-				if (currentClassLoader instanceof URLClassLoader) {
-					URLClassLoader urlClassLoader = (URLClassLoader) currentClassLoader;
-					for (URL url : urlClassLoader.getURLs()) {
-                        try {
-							Path path = Paths.get(url.toURI());
-							pathAction.accept(path);
-                        }
-						catch (URISyntaxException e) {
-                            throw new AssertionError(e);
-                        }
-                    }
-				}
-				currentClassLoader = currentClassLoader.getParent();
-			}
+		public boolean test(ClassFileHeader header) {
+			return classFiles.hasMemberAnnotatedWith(header, annotationType);
 		}
 	}
 
-	private static final class CtClassAnnotatedElementAdapter implements AnnotatedElement {
-		private final CtClass ctClass;
+	private static final class AnnotationPredicate implements Predicate<ClassFileHeader> {
+		private final AnnotationFilter annotationFilter;
+		private final ClassFileSource classFiles;
 
-		static CtClassAnnotatedElementAdapter adapt(CtClass preloadedClass) {
-			return new CtClassAnnotatedElementAdapter(preloadedClass);
+		public static AnnotationPredicate of(AnnotationFilter annotationFilter, ClassFileSource classFiles) {
+			return new AnnotationPredicate(annotationFilter, classFiles);
 		}
 
-		private CtClassAnnotatedElementAdapter(CtClass ctClass) {
-			this.ctClass = ctClass;
+		private AnnotationPredicate(AnnotationFilter annotationFilter, ClassFileSource classFiles) {
+			this.annotationFilter = annotationFilter;
+			this.classFiles = classFiles;
 		}
 
-		@SuppressWarnings({"unchecked", "IllegalCatch"})
 		@Override
-		public <T extends @Nullable Annotation> @Nullable T getAnnotation(Class<T> annotationClass) {
-			try {
-				return (T) ctClass.getAnnotation(annotationClass);
-			}
-			catch (Exception e) {
-				return null;
-			}
+		public boolean test(ClassFileHeader header) {
+			return annotationFilter.matches(classFiles.annotations(header));
 		}
 
-		@Override
-		public Annotation[] getAnnotations() {
-			throw new UnsupportedOperationException("Inherited annotation fetching is not currently supported");
-		}
+	}
 
-		@Override
-		public Annotation[] getDeclaredAnnotations() {
-			return (Annotation[]) ctClass.getAvailableAnnotations();
-		}
+	@FunctionalInterface
+	interface TypeLoader {
+		Class<?> load(String typeName) throws ClassNotFoundException;
 	}
 
 }
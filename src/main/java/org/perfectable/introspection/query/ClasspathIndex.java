@@ -0,0 +1,172 @@
+package org.perfectable.introspection.query;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Persistent store of archive listings.
+ *
+ * <p>Each archive has its own file in index directory, named by hash of archive path. This file contains path, size
+ * and modification time of the archive when it was listed, so stale listings can be detected and rebuilt.
+ *
+ * <p>Listings of multi-release archives depend on runtime release, so archive is keyed by release as well, and virtual
+ * machines of different releases sharing the index keep separate listings.
+ */
+final class ClasspathIndex {
+	private static final String INDEX_FILE_SUFFIX = ".index";
+	private static final String TEMPORARY_FILE_PREFIX = "index";
+	private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+	private static final String FORMAT_HEADER = "introspectable-index 2";
+
+	private final Path directory;
+
+	static ClasspathIndex at(Path directory) {
+		return new ClasspathIndex(directory);
+	}
+
+	private ClasspathIndex(Path directory) {
+		this.directory = directory;
+	}
+
+	ElementListing listing(Path archive) {
+		Optional<Stamp> stamp = Stamp.of(archive);
+		if (!stamp.isPresent()) {
+			return ElementListing.ofArchive(archive);
+		}
+		Path indexFile = indexFile(archive);
+		Optional<ElementListing> cached = read(indexFile, stamp.get());
+		if (cached.isPresent()) {
+			return cached.get();
+		}
+		ElementListing listing = ElementListing.ofArchive(archive);
+		try {
+			write(indexFile, stamp.get(), listing);
+		}
+		catch (IOException ignored) {
+			// index is only an optimization, listing will be rebuilt on next query
+			return listing;
+		}
+		return listing;
+	}
+
+	private Path indexFile(Path archive) {
+		String archiveKey = Hashing.sha256()
+			.hashString(MultiRelease.RUNTIME_RELEASE + ":" + archive.toAbsolutePath(), StandardCharsets.UTF_8)
+			.toString();
+		return directory.resolve(archiveKey + INDEX_FILE_SUFFIX);
+	}
+
+	private static Optional<ElementListing> read(Path indexFile, Stamp expected) {
+		if (!Files.isRegularFile(indexFile)) {
+			return Optional.empty();
+		}
+		try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+			if (!FORMAT_HEADER.equals(reader.readLine()) || !expected.matches(reader)) {
+				return Optional.empty();
+			}
+			int manifestEntryCount = Integer.parseInt(requireLine(reader));
+			ImmutableList.Builder<String> manifestClassPath = ImmutableList.builder();
+			for (int i = 0; i < manifestEntryCount; i++) {
+				manifestClassPath.add(requireLine(reader));
+			}
+			ImmutableList.Builder<String> entries = ImmutableList.builder();
+			@Nullable String entry;
+			while ((entry = reader.readLine()) != null) { // SUPPRESS InnerAssignment
+				entries.add(entry);
+			}
+			return Optional.of(ElementListing.of(entries.build(), manifestClassPath.build()));
+		}
+		catch (IOException | NumberFormatException ignored) {
+			// unreadable or corrupted index file is treated as stale
+			return Optional.empty();
+		}
+	}
+
+	private void write(Path indexFile, Stamp stamp, ElementListing listing) throws IOException {
+		Files.createDirectories(directory);
+		Path temporaryFile = Files.createTempFile(directory, TEMPORARY_FILE_PREFIX, TEMPORARY_FILE_SUFFIX);
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+				writeLine(writer, FORMAT_HEADER);
+				stamp.write(writer);
+				writeLine(writer, String.valueOf(listing.manifestClassPath().size()));
+				for (String manifestEntry : listing.manifestClassPath()) {
+					writeLine(writer, manifestEntry);
+				}
+				for (String entry : listing.entries()) {
+					writeLine(writer, entry);
+				}
+			}
+			Files.move(temporaryFile, indexFile,
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			// after successful move temporary file no longer exists, otherwise it would be left behind
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	private static String requireLine(BufferedReader reader) throws IOException {
+		@Nullable String line = reader.readLine();
+		if (line == null) {
+			throw new IOException("Unexpected end of index file");
+		}
+		return line;
+	}
+
+	private static void writeLine(BufferedWriter writer, String line) throws IOException {
+		writer.write(line);
+		writer.newLine();
+	}
+
+	private static final class Stamp {
+		private final String path;
+		private final long size;
+		private final long modificationTime;
+
+		static Optional<Stamp> of(Path archive) {
+			BasicFileAttributes attributes;
+			try {
+				attributes = Files.readAttributes(archive, BasicFileAttributes.class);
+			}
+			catch (IOException ignored) {
+				// archive does not exist or cannot be read, nothing to index
+				return Optional.empty();
+			}
+			if (!attributes.isRegularFile()) {
+				return Optional.empty();
+			}
+			return Optional.of(new Stamp(archive.toAbsolutePath().toString(),
+				attributes.size(), attributes.lastModifiedTime().toMillis()));
+		}
+
+		private Stamp(String path, long size, long modificationTime) {
+			this.path = path;
+			this.size = size;
+			this.modificationTime = modificationTime;
+		}
+
+		boolean matches(BufferedReader reader) throws IOException {
+			return path.equals(reader.readLine())
+				&& String.valueOf(size).equals(reader.readLine())
+				&& String.valueOf(modificationTime).equals(reader.readLine());
+		}
+
+		void write(BufferedWriter writer) throws IOException {
+			writeLine(writer, path);
+			writeLine(writer, String.valueOf(size));
+			writeLine(writer, String.valueOf(modificationTime));
+		}
+	}
+}
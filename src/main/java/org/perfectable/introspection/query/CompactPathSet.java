@@ -0,0 +1,246 @@
+package org.perfectable.introspection.query;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.primitives.UnsignedBytes;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Immutable set of resource paths, stored as prefix-compressed sorted array.
+ *
+ * <p>Paths are sorted by their UTF-8 encoding and split into blocks of fixed number of paths. First path in each
+ * block is stored in full, and each following one only stores length of prefix shared with previous path and the
+ * remaining bytes. Classpath resources share long package prefixes, so this takes a small fraction of memory needed
+ * for separate strings in hashed set.
+ *
+ * <p>Lookup finds block by binary search over first paths of blocks, and then decodes at most one block. Paths are
+ * only decoded to strings when iterated.
+ */
+final class CompactPathSet implements Iterable<String> {
+	private static final int BLOCK_SIZE = 16;
+	private static final int INITIAL_PATH_CAPACITY = 64;
+	private static final byte[] NO_BYTES = new byte[0];
+	private static final int VARIABLE_LENGTH_MASK = 0x7F;
+	private static final int VARIABLE_LENGTH_CONTINUATION = 0x80;
+	private static final int VARIABLE_LENGTH_SHIFT = 7;
+	private static final Comparator<byte[]> ENCODED_ORDER = UnsignedBytes.lexicographicalComparator();
+
+	static final CompactPathSet EMPTY = new CompactPathSet(NO_BYTES, new int[0], 0);
+
+	private final byte[] data;
+	private final int[] blockOffsets;
+	private final int size;
+
+	static CompactPathSet of(Collection<String> paths) {
+		byte[][] encodedPaths = paths.stream()
+			.map(path -> path.getBytes(StandardCharsets.UTF_8))
+			.sorted(ENCODED_ORDER)
+			.toArray(byte[][]::new);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		int[] blockOffsets = new int[(encodedPaths.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+		byte @Nullable [] previous = null;
+		int count = 0;
+		for (byte[] encodedPath : encodedPaths) {
+			if (previous != null && Arrays.equals(previous, encodedPath)) {
+				continue;
+			}
+			int sharedLength = 0;
+			if (count % BLOCK_SIZE == 0) {
+				blockOffsets[count / BLOCK_SIZE] = output.size();
+			}
+			else if (previous != null) {
+				sharedLength = sharedPrefixLength(previous, encodedPath);
+				writeVariableLength(output, sharedLength);
+			}
+			writeVariableLength(output, encodedPath.length - sharedLength);
+			output.write(encodedPath, sharedLength, encodedPath.length - sharedLength);
+			previous = encodedPath;
+			count++;
+		}
+		int blockCount = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		return new CompactPathSet(output.toByteArray(), Arrays.copyOf(blockOffsets, blockCount), count);
+	}
+
+	private CompactPathSet(byte[] data, int[] blockOffsets, int size) {
+		this.data = data;
+		this.blockOffsets = blockOffsets;
+		this.size = size;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(String path) {
+		byte[] target = path.getBytes(StandardCharsets.UTF_8);
+		int block = lastBlockStartingNotAfter(target);
+		if (block < 0) {
+			return false;
+		}
+		Cursor cursor = new Cursor(block);
+		for (int i = 0; i < BLOCK_SIZE && cursor.hasNext(); i++) {
+			cursor.advance();
+			int comparison = cursor.compareTo(target);
+			if (comparison == 0) {
+				return true;
+			}
+			if (comparison > 0) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	Iterable<String> withPrefix(String prefix) {
+		byte[] encodedPrefix = prefix.getBytes(StandardCharsets.UTF_8);
+		return () -> new PrefixIterator(encodedPrefix);
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new PrefixIterator(NO_BYTES);
+	}
+
+	private int lastBlockStartingNotAfter(byte[] target) {
+		int low = 0;
+		int high = blockOffsets.length - 1;
+		int result = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (compareBlockStart(middle, target) <= 0) {
+				result = middle;
+				low = middle + 1;
+			}
+			else {
+				high = middle - 1;
+			}
+		}
+		return result;
+	}
+
+	private int compareBlockStart(int block, byte[] target) {
+		Cursor cursor = new Cursor(block);
+		int length = cursor.readVariableLength();
+		// first path of block is stored in full, so it can be compared without decoding
+		return compare(data, cursor.position, length, target, target.length);
+	}
+
+	private static int compare(byte[] first, int firstStart, int firstLength, byte[] second, int secondLength) {
+		int commonLength = Math.min(firstLength, secondLength);
+		for (int i = 0; i < commonLength; i++) {
+			int comparison = UnsignedBytes.compare(first[firstStart + i], second[i]);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return Integer.compare(firstLength, secondLength);
+	}
+
+	private static int sharedPrefixLength(byte[] first, byte[] second) {
+		int commonLength = Math.min(first.length, second.length);
+		int result = 0;
+		while (result < commonLength && first[result] == second[result]) {
+			result++;
+		}
+		return result;
+	}
+
+	private static void writeVariableLength(ByteArrayOutputStream output, int value) {
+		int remaining = value;
+		while (remaining > VARIABLE_LENGTH_MASK) {
+			output.write((remaining & VARIABLE_LENGTH_MASK) | VARIABLE_LENGTH_CONTINUATION);
+			remaining >>>= VARIABLE_LENGTH_SHIFT;
+		}
+		output.write(remaining);
+	}
+
+	private final class Cursor {
+		private byte[] current = NO_BYTES;
+		private int length;
+		private int position;
+		private int index;
+
+		Cursor(int block) {
+			this.position = blockOffsets[block];
+			this.index = block * BLOCK_SIZE;
+		}
+
+		boolean hasNext() {
+			return index < size;
+		}
+
+		void advance() {
+			int sharedLength = index % BLOCK_SIZE == 0 ? 0 : readVariableLength();
+			int suffixLength = readVariableLength();
+			int newLength = sharedLength + suffixLength;
+			if (newLength > current.length) {
+				int grownLength = Math.max(current.length * 2, INITIAL_PATH_CAPACITY);
+				current = Arrays.copyOf(current, Math.max(newLength, grownLength));
+			}
+			System.arraycopy(data, position, current, sharedLength, suffixLength);
+			position += suffixLength;
+			length = newLength;
+			index++;
+		}
+
+		int compareTo(byte[] target) {
+			return compare(current, 0, length, target, target.length);
+		}
+
+		boolean startsWith(byte[] prefix) {
+			return length >= prefix.length && compare(current, 0, prefix.length, prefix, prefix.length) == 0;
+		}
+
+		String decode() {
+			return new String(current, 0, length, StandardCharsets.UTF_8);
+		}
+
+		int readVariableLength() {
+			int result = 0;
+			int shift = 0;
+			while (true) {
+				int next = UnsignedBytes.toInt(data[position++]);
+				result |= (next & VARIABLE_LENGTH_MASK) << shift;
+				if ((next & VARIABLE_LENGTH_CONTINUATION) == 0) {
+					return result;
+				}
+				shift += VARIABLE_LENGTH_SHIFT;
+			}
+		}
+	}
+
+	private final class PrefixIterator extends AbstractIterator<String> {
+		private final byte[] prefix;
+		private final @Nullable Cursor cursor;
+
+		PrefixIterator(byte[] prefix) {
+			this.prefix = prefix;
+			// paths with prefix start in last block that starts before prefix, or in first block if there's none
+			int block = Math.max(lastBlockStartingNotAfter(prefix), 0);
+			this.cursor = block < blockOffsets.length ? new Cursor(block) : null;
+		}
+
+		@Override
+		protected @Nullable String computeNext() {
+			if (cursor == null) {
+				return endOfData();
+			}
+			while (cursor.hasNext()) {
+				cursor.advance();
+				if (cursor.startsWith(prefix)) {
+					return cursor.decode();
+				}
+				if (cursor.compareTo(prefix) > 0) {
+					break;
+				}
+			}
+			return endOfData();
+		}
+	}
+}
@@ -0,0 +1,352 @@
+package org.perfectable.introspection.query;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Listings of classpath directories kept up to date with file system notifications.
+ *
+ * <p>Directory is walked only when it's listed for the first time. Each directory in its tree is then registered in
+ * {@link WatchService}, and on each subsequent listing, events queued since previous one are applied to the kept
+ * entries. Listing directory that didn't change doesn't touch file system at all. Events are polled only when
+ * listing is requested, so no thread is needed for watching.
+ *
+ * <p>Single instance is shared by all queries, so queries that are created repeatedly for the same directories reuse
+ * their listings. Directories on file systems that don't support watching are walked on every listing. When
+ * notifications were lost, directory is walked again.
+ *
+ * <p>Directories are listed through {@link Registration}, which is held by watching queries. Registrations own
+ * directories they listed, but are referenced weakly by the watcher. When all registrations that own a directory
+ * were garbage collected, directory is released: its watch keys are cancelled and its entries discarded. Released
+ * registrations are processed on next listing by any registration.
+ *
+ * <p>When class file in watched directory changes, its header is evicted from indexes of all class loaders, so
+ * that it's read again instead of being served from {@link ClassFileIndex}.
+ *
+ * <p>All state, including state of watched trees, is guarded by monitor of the watcher.
+ */
+final class DirectoryWatcher {
+	static final DirectoryWatcher INSTANCE = new DirectoryWatcher();
+
+	private static final String CLASS_FILE_SUFFIX = ".class";
+
+	private final Map<Path, WatchedTree> trees = new HashMap<>();
+
+	private final Map<FileSystem, Optional<WatchService>> services = new HashMap<>();
+
+	private final SetMultimap<WatchKey, WatchedTree> keyTrees = HashMultimap.create();
+
+	private final ReferenceQueue<Registration> releasedRegistrations = new ReferenceQueue<>();
+
+	private DirectoryWatcher() {
+		// singleton
+	}
+
+	synchronized Registration register() {
+		return new Registration(this);
+	}
+
+	synchronized boolean isWatching(Path directory) {
+		releaseCollectedOwners();
+		return trees.containsKey(directory);
+	}
+
+	private synchronized ElementListing listing(Path directory, OwnerReference owner) {
+		@Nullable WatchedTree tree = trees.get(directory);
+		if (tree == null) {
+			Optional<WatchService> service = service(directory.getFileSystem());
+			if (!service.isPresent()) {
+				return ElementListing.ofDirectory(directory, PathPrefixFilter.ALL);
+			}
+			tree = new WatchedTree(directory, service.get());
+			trees.put(directory, tree);
+		}
+		else {
+			applyPendingEvents(tree.service);
+		}
+		// tree is owned before released owners are processed, so it is kept when its previous owners were collected
+		tree.owners.add(owner);
+		owner.directories.add(directory);
+		releaseCollectedOwners();
+		if (tree.isStale) {
+			tree.rescan();
+		}
+		return tree.listing();
+	}
+
+	private void releaseCollectedOwners() {
+		@Nullable Reference<? extends Registration> released = releasedRegistrations.poll();
+		while (released != null) {
+			OwnerReference owner = (OwnerReference) released;
+			for (Path directory : owner.directories) {
+				@Nullable WatchedTree tree = trees.get(directory);
+				if (tree != null && tree.owners.remove(owner) && tree.owners.isEmpty()) {
+					release(tree);
+				}
+			}
+			released = releasedRegistrations.poll();
+		}
+	}
+
+	private void release(WatchedTree tree) {
+		trees.remove(tree.root);
+		for (WatchKey key : ImmutableSet.copyOf(keyTrees.keySet())) {
+			// nested trees can share keys of their common directories
+			if (keyTrees.remove(key, tree) && !keyTrees.containsKey(key)) {
+				key.cancel();
+			}
+		}
+	}
+
+	private Optional<WatchService> service(FileSystem fileSystem) {
+		@Nullable Optional<WatchService> service = services.get(fileSystem);
+		if (service == null) {
+			service = createService(fileSystem);
+			services.put(fileSystem, service);
+		}
+		return service;
+	}
+
+	private static Optional<WatchService> createService(FileSystem fileSystem) {
+		try {
+			return Optional.of(fileSystem.newWatchService());
+		}
+		catch (UnsupportedOperationException | IOException ignored) {
+			// file system cannot be watched, its directories will be walked each time
+			return Optional.empty();
+		}
+	}
+
+	private void applyPendingEvents(WatchService service) {
+		@Nullable WatchKey key = service.poll();
+		while (key != null) {
+			Set<WatchedTree> watchingTrees = ImmutableSet.copyOf(keyTrees.get(key));
+			for (WatchEvent<?> event : key.pollEvents()) {
+				for (WatchedTree watchingTree : watchingTrees) {
+					watchingTree.apply((Path) key.watchable(), event);
+				}
+			}
+			if (watchingTrees.isEmpty()) {
+				key.cancel();
+			}
+			if (!key.reset()) {
+				keyTrees.removeAll(key);
+			}
+			key = service.poll();
+		}
+	}
+
+	private boolean cancelKeysUnder(Path removed) {
+		boolean cancelledAny = false;
+		for (WatchKey key : ImmutableSet.copyOf(keyTrees.keySet())) {
+			if (((Path) key.watchable()).startsWith(removed)) {
+				key.cancel();
+				keyTrees.removeAll(key);
+				cancelledAny = true;
+			}
+		}
+		return cancelledAny;
+	}
+
+	/**
+	 * Handle that lists directories on behalf of watching queries.
+	 *
+	 * <p>Directories listed by registration stay watched while it's reachable.
+	 */
+	static final class Registration {
+		private final DirectoryWatcher watcher;
+		private final OwnerReference reference;
+
+		Registration(DirectoryWatcher watcher) {
+			this.watcher = watcher;
+			this.reference = new OwnerReference(this, watcher.releasedRegistrations);
+		}
+
+		ElementListing listing(Path directory) {
+			return watcher.listing(directory, reference);
+		}
+	}
+
+	private static final class OwnerReference extends WeakReference<Registration> {
+		private final Set<Path> directories = new HashSet<>();
+
+		OwnerReference(Registration referent, ReferenceQueue<Registration> queue) {
+			super(referent, queue);
+		}
+	}
+
+	private final class WatchedTree {
+		private final Path root;
+		private final WatchService service;
+		private final Set<OwnerReference> owners = new HashSet<>();
+		private final Set<String> addedEntries = new HashSet<>();
+		private final Set<String> removedEntries = new HashSet<>();
+		private CompactPathSet entries = CompactPathSet.EMPTY;
+		private @Nullable ElementListing listing;
+		private boolean isStale = true;
+
+		WatchedTree(Path root, WatchService service) {
+			this.root = root;
+			this.service = service;
+		}
+
+		ElementListing listing() {
+			@Nullable ElementListing current = listing;
+			if (current == null) {
+				entries = withChanges();
+				current = ElementListing.of(entries, ImmutableList.of());
+				listing = current;
+			}
+			return current;
+		}
+
+		/*
+		 * Changes are collected in small hashed sets, and merged into compact set only when listing is requested.
+		 */
+		private CompactPathSet withChanges() {
+			if (addedEntries.isEmpty() && removedEntries.isEmpty()) {
+				return entries;
+			}
+			List<String> merged = new ArrayList<>(entries.size() + addedEntries.size());
+			for (String entry : entries) {
+				if (!removedEntries.contains(entry)) {
+					merged.add(entry);
+				}
+			}
+			merged.addAll(addedEntries);
+			addedEntries.clear();
+			removedEntries.clear();
+			return CompactPathSet.of(merged);
+		}
+
+		void rescan() {
+			keyTrees.values().removeAll(ImmutableSet.of(this));
+			// changes that were missed could have modified any class file in the tree
+			entries.forEach(DirectoryWatcher::evictHeader);
+			addedEntries.forEach(DirectoryWatcher::evictHeader);
+			entries = CompactPathSet.EMPTY;
+			addedEntries.clear();
+			removedEntries.clear();
+			listing = null;
+			isStale = false;
+			addTree(root);
+		}
+
+		void apply(Path directory, WatchEvent<?> event) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				isStale = true;
+				return;
+			}
+			Path child = directory.resolve((Path) event.context());
+			String relativePath = root.relativize(child).toString();
+			listing = null;
+			evictHeader(relativePath);
+			if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+				remove(relativePath);
+				// removed directory takes all its entries with it
+				String directoryPrefix = relativePath + child.getFileSystem().getSeparator();
+				for (String removedEntry : entries.withPrefix(directoryPrefix)) {
+					remove(removedEntry);
+					evictHeader(removedEntry);
+				}
+				addedEntries.removeIf(addedEntry -> addedEntry.startsWith(directoryPrefix));
+				// watches follow moved directories, so their keys would report old paths; tree is walked again instead
+				if (cancelKeysUnder(child)) {
+					isStale = true;
+				}
+			}
+			else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+				// files could be created in new directory before it was registered
+				addTree(child);
+			}
+			else if (Files.isRegularFile(child)) {
+				add(relativePath);
+			}
+		}
+
+		private void addTree(Path start) {
+			try {
+				Files.walkFileTree(start, new RegisteringFileVisitor(this));
+			}
+			catch (IOException ignored) {
+				// tree could not be walked or registered, it will be walked again on next listing
+				isStale = true;
+			}
+		}
+
+		void register(Path directory) throws IOException {
+			WatchKey key = directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+			keyTrees.put(key, this);
+		}
+
+		void add(Path file) {
+			add(root.relativize(file).toString());
+		}
+
+		private void add(String entry) {
+			removedEntries.remove(entry);
+			addedEntries.add(entry);
+		}
+
+		private void remove(String entry) {
+			addedEntries.remove(entry);
+			removedEntries.add(entry);
+		}
+	}
+
+	private static void evictHeader(String relativePath) {
+		if (relativePath.endsWith(CLASS_FILE_SUFFIX)) {
+			String className = relativePath.substring(0, relativePath.length() - CLASS_FILE_SUFFIX.length())
+				.replace(File.separatorChar, '.');
+			ClassFileSource.evictHeader(className);
+		}
+	}
+
+	private static final class RegisteringFileVisitor extends SimpleFileVisitor<Path> {
+		private final WatchedTree tree;
+
+		RegisteringFileVisitor(WatchedTree tree) {
+			this.tree = tree;
+		}
+
+		@Override
+		public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+			// directory is registered before its content is read, so files created meanwhile are not missed
+			tree.register(directory);
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+			tree.add(file);
+			return FileVisitResult.CONTINUE;
+		}
+	}
+}
@@ -0,0 +1,292 @@
+package org.perfectable.introspection.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Resources contained in single classpath element, with elements it links to.
+ *
+ * <p>Archives which manifest declares nested layout, like executable Spring Boot archives, are listed with entries
+ * of their classes directory and nested libraries, as they are seen by class loader that launches them.
+ *
+ * <p>Versioned entries of multi-release archives are listed by name they override for running release, as described
+ * in {@link MultiRelease}.
+ *
+ * <p>Archives that contain build-time index generated by {@link ClassIndexProcessor} are still listed from their
+ * entries, so scanning them reads archive directory as usual. The index records only classes declared in source as
+ * top-level or member types, and listing only its classes would miss anonymous and local classes, and bodies of
+ * enum constants. Index is used only as a source of class file headers, in {@link ClassFileSource}.
+ *
+ * <p>Entries are stored in {@link CompactPathSet}, and are iterated in order of their paths. Listing restricted to
+ * some packages shares the set of complete listing, and only iterates paths that start with the longest of
+ * restricting prefixes.
+ */
+final class ElementListing {
+	private static final Splitter MANIFEST_CLASSPATH_ENTRY_SPLITTER = Splitter.on(" ");
+	private static final Attributes.Name NESTED_CLASSES_ATTRIBUTE = new Attributes.Name("Spring-Boot-Classes");
+	private static final Attributes.Name NESTED_LIBRARIES_ATTRIBUTE = new Attributes.Name("Spring-Boot-Lib");
+	private static final String DIRECTORY_SUFFIX = "/";
+	private static final String ARCHIVE_SUFFIX = ".jar";
+
+	private static final ElementListing EMPTY =
+		new ElementListing(CompactPathSet.EMPTY, PathPrefixFilter.ALL, ImmutableList.of());
+
+	private final CompactPathSet entries;
+	private final PathPrefixFilter filter;
+	private final ImmutableList<String> manifestClassPath;
+
+	static ElementListing of(Collection<String> entries, ImmutableList<String> manifestClassPath) {
+		return of(CompactPathSet.of(entries), manifestClassPath);
+	}
+
+	static ElementListing of(CompactPathSet entries, ImmutableList<String> manifestClassPath) {
+		return new ElementListing(entries, PathPrefixFilter.ALL, manifestClassPath);
+	}
+
+	static ElementListing ofDirectory(Path directoryBase, PathPrefixFilter filter) {
+		ImmutableList.Builder<String> resultBuilder = ImmutableList.builder();
+		try {
+			Files.walkFileTree(directoryBase, new ResultAddingFileVisitor(resultBuilder, directoryBase, filter));
+		}
+		catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		return of(resultBuilder.build(), ImmutableList.of());
+	}
+
+	static ElementListing ofArchive(Path jarPath) {
+		return ofArchive(jarPath, PathPrefixFilter.ALL);
+	}
+
+	static ElementListing ofArchive(Path jarPath, PathPrefixFilter filter) {
+		try {
+			return ofZipArchive(ZipArchive.map(jarPath), filter);
+		}
+		catch (ZipException ignored) {
+			// archive layout not supported by central directory reader, let JarFile handle it
+			return ofJarFile(jarPath, filter);
+		}
+		catch (IOException ignored) {
+			// could not open jar file, probably not jar
+			return EMPTY;
+		}
+	}
+
+	private static ElementListing ofZipArchive(ZipArchive archive, PathPrefixFilter filter) throws IOException {
+		@Nullable Manifest manifest = readManifest(archive);
+		ImmutableList<String> entries = archiveEntries(archive, manifest, filter);
+		@Nullable String manifestClassPath = null;
+		if (manifest != null) {
+			manifestClassPath = getManifestClassPathString(manifest);
+			entries = withNestedEntries(archive, manifest, entries, filter);
+		}
+		return of(entries, splitManifestClassPath(manifestClassPath));
+	}
+
+	private static @Nullable Manifest readManifest(ZipArchive archive) throws IOException {
+		Optional<byte[]> manifestBytes = archive.read(JarFile.MANIFEST_NAME);
+		if (!manifestBytes.isPresent()) {
+			return null;
+		}
+		return new Manifest(new ByteArrayInputStream(manifestBytes.get()));
+	}
+
+	private static ImmutableList<String> archiveEntries(ZipArchive archive, @Nullable Manifest manifest,
+														PathPrefixFilter filter) throws ZipException {
+		if (manifest != null && MultiRelease.isMultiRelease(manifest)) {
+			return archive.fileNames(filter, MultiRelease.RUNTIME_RELEASE);
+		}
+		return archive.fileNames(filter);
+	}
+
+	/*
+	 * Executable archives with nested layout keep application classes in a directory, and libraries as archives in
+	 * another. Launcher class loader serves them as if they were at root of separate elements, so their entries are
+	 * listed with these locations stripped. Libraries are read from outer archive, without extracting them.
+	 */
+	private static ImmutableList<String> withNestedEntries(ZipArchive archive, Manifest manifest,
+														   ImmutableList<String> entries, PathPrefixFilter filter)
+			throws ZipException {
+		@Nullable String classesDirectory = getDirectoryAttribute(manifest, NESTED_CLASSES_ATTRIBUTE);
+		@Nullable String librariesDirectory = getDirectoryAttribute(manifest, NESTED_LIBRARIES_ATTRIBUTE);
+		if (classesDirectory == null && librariesDirectory == null) {
+			return entries;
+		}
+		ImmutableList.Builder<String> result = ImmutableList.builder();
+		for (String entry : entries) {
+			if (!isInside(entry, classesDirectory) && !isInside(entry, librariesDirectory)) {
+				result.add(entry);
+			}
+		}
+		if (classesDirectory != null) {
+			for (String entry : archive.fileNames(filter.within(classesDirectory))) {
+				result.add(entry.substring(classesDirectory.length()));
+			}
+		}
+		if (librariesDirectory != null) {
+			for (String library : archive.fileNames(PathPrefixFilter.ALL.and(librariesDirectory))) {
+				if (library.endsWith(ARCHIVE_SUFFIX)) {
+					addNestedArchiveEntries(result, archive, library, filter);
+				}
+			}
+		}
+		return result.build();
+	}
+
+	private static void addNestedArchiveEntries(ImmutableList.Builder<String> result, ZipArchive archive,
+												String library, PathPrefixFilter filter) {
+		try {
+			Optional<ZipArchive> nested = archive.nested(library);
+			if (nested.isPresent()) {
+				ZipArchive nestedArchive = nested.get();
+				result.addAll(archiveEntries(nestedArchive, readManifest(nestedArchive), filter));
+			}
+		}
+		catch (IOException ignored) {
+			// nested library is not readable archive, its classes are skipped like ones of unreadable element
+		}
+	}
+
+	private static @Nullable String getDirectoryAttribute(Manifest manifest, Attributes.Name name) {
+		@Nullable String value = manifest.getMainAttributes().getValue(name);
+		if (value == null || value.isEmpty()) {
+			return null;
+		}
+		return value.endsWith(DIRECTORY_SUFFIX) ? value : value + DIRECTORY_SUFFIX;
+	}
+
+	private static boolean isInside(String entry, @Nullable String directory) {
+		return directory != null && entry.startsWith(directory);
+	}
+
+	private static ElementListing ofJarFile(Path jarPath, PathPrefixFilter filter) {
+		ImmutableList.Builder<String> resultBuilder = ImmutableList.builder();
+		@Nullable String manifestClassPath;
+		try (JarFile jarFile = new JarFile(jarPath.toFile())) {
+			@Nullable Manifest manifest = jarFile.getManifest();
+			manifestClassPath = manifest == null ? null : getManifestClassPathString(manifest);
+			boolean multiRelease = manifest != null && MultiRelease.isMultiRelease(manifest);
+			Streams.from(jarFile.entries())
+				.filter(entry -> !entry.isDirectory())
+				.map(ZipEntry::getName)
+				.map(name -> multiRelease ? resolveVersioned(name) : Optional.of(name))
+				.filter(Optional::isPresent)
+				.map(Optional::get)
+				.filter(filter::matches)
+				.distinct()
+				.forEach(resultBuilder::add);
+		}
+		catch (IOException ignored) {
+			// could not open jar file, probably not jar
+			return EMPTY;
+		}
+		return of(resultBuilder.build(), splitManifestClassPath(manifestClassPath));
+	}
+
+	private static Optional<String> resolveVersioned(String name) {
+		if (!name.startsWith(MultiRelease.VERSIONS_DIRECTORY)) {
+			return Optional.of(name);
+		}
+		return MultiRelease.baseName(name, MultiRelease.RUNTIME_RELEASE);
+	}
+
+	private ElementListing(CompactPathSet entries, PathPrefixFilter filter, ImmutableList<String> manifestClassPath) {
+		this.entries = entries;
+		this.filter = filter;
+		this.manifestClassPath = manifestClassPath;
+	}
+
+	Iterable<String> entries() {
+		if (!filter.isRestricted()) {
+			return entries;
+		}
+		// all prefixes must match, so paths outside of the longest one are never iterated
+		return Iterables.filter(entries.withPrefix(filter.longestPrefix()), filter::matches);
+	}
+
+	int entryCount() {
+		return filter.isRestricted() ? Iterables.size(entries()) : entries.size();
+	}
+
+	boolean contains(String path) {
+		return filter.matches(path) && entries.contains(path);
+	}
+
+	ImmutableList<String> manifestClassPath() {
+		return manifestClassPath;
+	}
+
+	ElementListing restrictedTo(PathPrefixFilter additionalFilter) {
+		if (!additionalFilter.isRestricted()) {
+			return this;
+		}
+		return new ElementListing(entries, filter.and(additionalFilter), manifestClassPath);
+	}
+
+	ImmutableList<Path> linkedPaths() {
+		ImmutableList.Builder<Path> result = ImmutableList.builder();
+		for (String manifestEntry : manifestClassPath) {
+			URI manifestUrl = URI.create(manifestEntry);
+			result.add(Paths.get(manifestUrl.getPath()));
+		}
+		return result.build();
+	}
+
+	private static @Nullable String getManifestClassPathString(Manifest manifest) {
+		return manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+	}
+
+	private static ImmutableList<String> splitManifestClassPath(@Nullable String manifestClassPath) {
+		if (manifestClassPath == null) {
+			return ImmutableList.of();
+		}
+		return ImmutableList.copyOf(MANIFEST_CLASSPATH_ENTRY_SPLITTER.split(manifestClassPath));
+	}
+
+	private static final class ResultAddingFileVisitor extends SimpleFileVisitor<Path> {
+		private final ImmutableList.Builder<String> resultBuilder;
+		private final Path basePath;
+		private final PathPrefixFilter filter;
+
+		ResultAddingFileVisitor(ImmutableList.Builder<String> resultBuilder, Path basePath,
+								PathPrefixFilter filter) {
+			this.resultBuilder = resultBuilder;
+			this.basePath = basePath;
+			this.filter = filter;
+		}
+
+		@Override
+		public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes basicFileAttributes) {
+			String relativePath = basePath.relativize(path).toString();
+			return filter.mayContain(relativePath) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+		}
+
+		@Override
+		public FileVisitResult visitFile(Path path, BasicFileAttributes basicFileAttributes) {
+			String relativePath = basePath.relativize(path).toString();
+			if (filter.matches(relativePath)) {
+				resultBuilder.add(relativePath);
+			}
+			return FileVisitResult.CONTINUE;
+		}
+	}
+}
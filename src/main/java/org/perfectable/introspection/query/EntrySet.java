@@ -0,0 +1,77 @@
+package org.perfectable.introspection.query;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Set of resources on classpath, used to check if resource is present without scanning.
+ *
+ * <p>Listings of archives, including ones linked by manifest, are kept as they were listed, with entries stored in
+ * {@link CompactPathSet}, as archives are not expected to change while they are on classpath. Directories are not
+ * listed at all, candidate is checked directly on file system instead, so resources added or removed from
+ * directories are always seen.
+ *
+ * <p>Set is only valid for classpath roots it was built with, and needs to be rebuilt when they change.
+ */
+final class EntrySet {
+	private final ImmutableList<Path> roots;
+	private final ImmutableList<ElementListing> archiveListings;
+	private final ImmutableList<Path> directories;
+
+	static EntrySet build(ImmutableList<Path> roots, Function<? super Path, ElementListing> lister) {
+		Set<Path> visited = new HashSet<>();
+		ImmutableList.Builder<ElementListing> archiveListings = ImmutableList.builder();
+		ImmutableList.Builder<Path> directories = ImmutableList.builder();
+		for (Path root : roots) {
+			addElement(root, lister, visited, archiveListings, directories);
+		}
+		return new EntrySet(roots, archiveListings.build(), directories.build());
+	}
+
+	private EntrySet(ImmutableList<Path> roots, ImmutableList<ElementListing> archiveListings,
+					 ImmutableList<Path> directories) {
+		this.roots = roots;
+		this.archiveListings = archiveListings;
+		this.directories = directories;
+	}
+
+	boolean isBuiltFor(ImmutableList<Path> currentRoots) {
+		return roots.equals(currentRoots);
+	}
+
+	boolean contains(String candidate) {
+		for (ElementListing archiveListing : archiveListings) {
+			if (archiveListing.contains(candidate)) {
+				return true;
+			}
+		}
+		for (Path directory : directories) {
+			if (Files.isRegularFile(directory.resolve(candidate))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void addElement(Path element, Function<? super Path, ElementListing> lister, Set<Path> visited,
+								   ImmutableList.Builder<ElementListing> archiveListings,
+								   ImmutableList.Builder<Path> directories) {
+		if (!visited.add(element)) {
+			return;
+		}
+		if (Files.isDirectory(element)) {
+			directories.add(element);
+			return;
+		}
+		ElementListing listing = lister.apply(element);
+		archiveListings.add(listing);
+		for (Path linkedPath : listing.linkedPaths()) {
+			addElement(linkedPath, lister, visited, archiveListings, directories);
+		}
+	}
+}
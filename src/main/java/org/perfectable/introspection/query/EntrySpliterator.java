@@ -0,0 +1,131 @@
+package org.perfectable.introspection.query;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Lazily lists resources from classpath elements.
+ *
+ * <p>Elements are listed only when all entries of previous elements were consumed, so short-circuiting operations
+ * don't read remaining elements. Elements linked by manifest are listed right after element that links them, which
+ * gives the same order as eager scanning. Each element is listed at most once, and each resource is returned only
+ * on its first occurrence.
+ *
+ * <p>Entries of each element are returned in order of their paths, as they are stored in {@link CompactPathSet} of
+ * its listing. To find resources that were already returned, bloom filter over all previous elements is checked
+ * first, and only when it reports possible match, listings of previous elements are searched.
+ */
+final class EntrySpliterator extends Spliterators.AbstractSpliterator<String> {
+	private static final int MINIMAL_FILTER_CAPACITY = 1024;
+	private static final double FILTER_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+	private final Function<? super Path, ElementListing> lister;
+	private final Deque<Path> pendingElements;
+	private final Set<Path> visitedElements = new HashSet<>();
+	private final List<ElementListing> previousListings = new ArrayList<>();
+	private BloomFilter<CharSequence> previousEntriesFilter = createFilter(MINIMAL_FILTER_CAPACITY);
+	private int filterCapacity = MINIMAL_FILTER_CAPACITY;
+	private int filteredCount;
+	private @Nullable ElementListing currentListing;
+	private Iterator<String> currentEntries = Collections.emptyIterator();
+
+	static EntrySpliterator of(ImmutableList<Path> roots, Function<? super Path, ElementListing> lister) {
+		return new EntrySpliterator(roots, lister);
+	}
+
+	private EntrySpliterator(ImmutableList<Path> roots, Function<? super Path, ElementListing> lister) {
+		super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+		this.lister = lister;
+		this.pendingElements = new ArrayDeque<>(roots);
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super String> action) {
+		while (true) {
+			while (currentEntries.hasNext()) {
+				String entry = currentEntries.next();
+				if (!isPreviouslyListed(entry)) {
+					action.accept(entry);
+					return true;
+				}
+			}
+			if (!listNextElement()) {
+				return false;
+			}
+		}
+	}
+
+	private boolean isPreviouslyListed(String entry) {
+		if (!previousEntriesFilter.mightContain(entry)) {
+			return false;
+		}
+		for (ElementListing listing : previousListings) {
+			if (listing.contains(entry)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean listNextElement() {
+		while (!pendingElements.isEmpty()) {
+			Path element = pendingElements.removeFirst();
+			if (!visitedElements.add(element)) {
+				continue;
+			}
+			ElementListing listing = lister.apply(element);
+			ImmutableList<Path> linkedPaths = listing.linkedPaths();
+			for (Path linkedPath : linkedPaths.reverse()) {
+				pendingElements.addFirst(linkedPath);
+			}
+			if (currentListing != null) {
+				addPreviousListing(currentListing);
+			}
+			currentListing = listing;
+			currentEntries = listing.entries().iterator();
+			return true;
+		}
+		return false;
+	}
+
+	private void addPreviousListing(ElementListing listing) {
+		int entryCount = listing.entryCount();
+		if (entryCount == 0) {
+			return;
+		}
+		previousListings.add(listing);
+		filteredCount += entryCount;
+		if (filteredCount <= filterCapacity) {
+			listing.entries().forEach(previousEntriesFilter::put);
+			return;
+		}
+		// filter cannot grow, so it is rebuilt with spare capacity, which happens logarithmic number of times
+		filterCapacity = filteredCount * 2;
+		previousEntriesFilter = createFilter(filterCapacity);
+		for (ElementListing previous : previousListings) {
+			previous.entries().forEach(previousEntriesFilter::put);
+		}
+	}
+
+	private static BloomFilter<CharSequence> createFilter(int capacity) {
+		return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), capacity,
+			FILTER_FALSE_POSITIVE_PROBABILITY);
+	}
+}
@@ -0,0 +1,91 @@
+package org.perfectable.introspection.query;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Record of classes that could not be loaded by queries.
+ *
+ * <p>Cache is kept for each class loader, and is shared by all queries that load classes with it. When loading
+ * a class fails, its name is stored with the reason of failure, and later queries skip it without another attempt,
+ * which would usually fail the same way, but only after searching for class and creating new exception.
+ *
+ * <p>Reason is stored as name of exception class and its message, not as exception itself. Stack trace and causes of
+ * exception can reference classes of the loader, and would keep it reachable.
+ *
+ * <p>Caches are held weakly by their class loaders, so cache is discarded together with its loader. Number of
+ * failures kept for a loader is bounded, and failures expire after some time, so that classes which failed
+ * transiently, for example because of concurrent definition, are eventually loaded again. Failures can also be
+ * cleared explicitly, after class loader was given new elements.
+ *
+ * <p>This class is thread-safe, as system query is shared between threads and classes can be loaded in parallel.
+ */
+final class LoadFailureCache {
+	private static final int MAXIMUM_FAILURE_COUNT = 1 << 12;
+	private static final long FAILURE_RETENTION_MINUTES = 10;
+	private static final String REASON_SEPARATOR = ": ";
+
+	private static final ConcurrentMap<ClassLoader, LoadFailureCache> LOADER_CACHES =
+		new MapMaker().weakKeys().makeMap();
+
+	private final Cache<String, String> failures = CacheBuilder.newBuilder()
+		.maximumSize(MAXIMUM_FAILURE_COUNT)
+		.expireAfterWrite(FAILURE_RETENTION_MINUTES, TimeUnit.MINUTES)
+		.build();
+
+	static LoadFailureCache of(ClassLoader loader) {
+		// cache must not reference its loader, or it would keep loader reachable from the map
+		return LOADER_CACHES.computeIfAbsent(loader, key -> new LoadFailureCache());
+	}
+
+	private LoadFailureCache() {
+		// use factory method
+	}
+
+	/*
+	 * Loads class with specified loader, unless it already failed. Failure is recorded, and reported as
+	 * ClassNotFoundException, with original failure as a cause if it happened in this call, or with its reason in
+	 * message if it was recorded before.
+	 */
+	@SuppressWarnings("IllegalCatch")
+	Class<?> load(String className, ClassQuery.TypeLoader loader) throws ClassNotFoundException {
+		@Nullable String reason = failures.getIfPresent(className);
+		if (reason != null) {
+			throw new ClassNotFoundException(className + " failed to load before" + REASON_SEPARATOR + reason);
+		}
+		try {
+			return loader.load(className);
+		}
+		catch (Throwable e) {
+			// although this should only throw ClassNotFoundException or NoClassDefFoundError,
+			// lot of different exception occurs while loading classes and if it happens, Class is not loadable
+			failures.asMap().putIfAbsent(className, reason(e));
+			throw new ClassNotFoundException(className, e);
+		}
+	}
+
+	Optional<String> failure(String className) {
+		return Optional.ofNullable(failures.getIfPresent(className));
+	}
+
+	ImmutableMap<String, String> failures() {
+		return ImmutableMap.copyOf(failures.asMap());
+	}
+
+	void clear() {
+		failures.invalidateAll();
+	}
+
+	private static String reason(Throwable failure) {
+		@Nullable String message = failure.getMessage();
+		String exceptionName = failure.getClass().getName();
+		return message == null ? exceptionName : exceptionName + REASON_SEPARATOR + message;
+	}
+}
@@ -0,0 +1,142 @@
+package org.perfectable.introspection.query;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ProviderNotFoundException;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Resources of modules in runtime image and on module path.
+ *
+ * <p>Runtime image is read through {@code jrt:/} file system, where each module is a directory. When listing is
+ * restricted to some package, package table of the image is consulted first, and modules that don't contain any
+ * matching package are not listed at all.
+ *
+ * <p>Module path is read from system property, in the same way as launcher does. Its entries are either modules
+ * themselves, as modular archives or exploded directories, or directories that contain modules.
+ */
+final class ModuleResourceSource extends UrlResourceSource {
+	static final ModuleResourceSource INSTANCE = new ModuleResourceSource(ScanConfiguration.DEFAULT);
+
+	private static final URI RUNTIME_IMAGE_URI = URI.create("jrt:/");
+	private static final String MODULES_DIRECTORY = "/modules";
+	private static final String PACKAGES_DIRECTORY = "/packages";
+	private static final String MODULE_PATH_PROPERTY = "jdk.module.path";
+	private static final String MODULE_DESCRIPTOR_NAME = "module-info.class";
+
+	private static final Splitter MODULE_PATH_SPLITTER = Splitter.on(File.pathSeparatorChar).omitEmptyStrings();
+
+	private ModuleResourceSource(ScanConfiguration configuration) {
+		super(configuration);
+	}
+
+	@Override
+	protected Object rootsKey() {
+		// runtime image doesn't change while virtual machine runs, so modules are selected from it only once
+		return String.valueOf(System.getProperty(MODULE_PATH_PROPERTY));
+	}
+
+	@Override
+	protected void generatePaths(Consumer<Path> pathAction) {
+		Optional<FileSystem> runtimeImage = runtimeImage();
+		if (runtimeImage.isPresent()) {
+			generateImagePaths(runtimeImage.get(), pathFilter(), pathAction);
+		}
+		@Nullable String modulePath = System.getProperty(MODULE_PATH_PROPERTY);
+		if (modulePath != null) {
+			for (String entry : MODULE_PATH_SPLITTER.split(modulePath)) {
+				generateModulePathEntryPaths(Paths.get(entry), pathAction);
+			}
+		}
+	}
+
+	@Override
+	protected UrlResourceSource withConfiguration(ScanConfiguration newConfiguration) {
+		return new ModuleResourceSource(newConfiguration);
+	}
+
+	static Optional<FileSystem> runtimeImage() {
+		try {
+			return Optional.of(FileSystems.getFileSystem(RUNTIME_IMAGE_URI));
+		}
+		catch (ProviderNotFoundException | FileSystemNotFoundException ignored) {
+			// runtime without modules, like java 8, has no image to scan
+			return Optional.empty();
+		}
+	}
+
+	static void generateImagePaths(FileSystem runtimeImage, PathPrefixFilter filter, Consumer<Path> pathAction) {
+		Optional<ImmutableSet<String>> containingModules =
+			filter.isRestricted() ? containingModules(runtimeImage, filter) : Optional.empty();
+		try (DirectoryStream<Path> modules = Files.newDirectoryStream(runtimeImage.getPath(MODULES_DIRECTORY))) {
+			for (Path module : modules) {
+				if (!containingModules.isPresent() || containingModules.get().contains(fileName(module))) {
+					pathAction.accept(module);
+				}
+			}
+		}
+		catch (IOException ignored) {
+			// image without readable module directory has no modules to scan
+		}
+	}
+
+	static void generateModulePathEntryPaths(Path entry, Consumer<Path> pathAction) {
+		if (!Files.isDirectory(entry) || Files.exists(entry.resolve(MODULE_DESCRIPTOR_NAME))) {
+			pathAction.accept(entry);
+			return;
+		}
+		// directory of modules, where each archive and directory is separate module
+		try (DirectoryStream<Path> modules =
+				 Files.newDirectoryStream(entry, ModuleResourceSource::isModule)) {
+			modules.forEach(pathAction);
+		}
+		catch (IOException ignored) {
+			// unreadable directory provides no modules
+		}
+	}
+
+	private static Optional<ImmutableSet<String>> containingModules(FileSystem runtimeImage,
+																	PathPrefixFilter filter) {
+		ImmutableSet.Builder<String> result = ImmutableSet.builder();
+		try (DirectoryStream<Path> packages = Files.newDirectoryStream(runtimeImage.getPath(PACKAGES_DIRECTORY))) {
+			for (Path packageDirectory : packages) {
+				String packagePath = fileName(packageDirectory).replace('.', '/');
+				if (!filter.mayContainPackage(packagePath)) {
+					continue;
+				}
+				// package directory contains links named by modules that have this package
+				try (DirectoryStream<Path> packageModules = Files.newDirectoryStream(packageDirectory)) {
+					for (Path packageModule : packageModules) {
+						result.add(fileName(packageModule));
+					}
+				}
+			}
+		}
+		catch (IOException ignored) {
+			// without package table, all modules are listed and filtered by their content
+			return Optional.empty();
+		}
+		return Optional.of(result.build());
+	}
+
+	private static boolean isModule(Path candidate) {
+		return Files.isDirectory(candidate) || ClassPathResourceSource.isJar(candidate);
+	}
+
+	private static String fileName(Path path) {
+		return String.valueOf(path.getFileName());
+	}
+}
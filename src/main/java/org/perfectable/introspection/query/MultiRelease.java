@@ -0,0 +1,63 @@
+package org.perfectable.introspection.query;
+
+import java.util.Optional;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import com.google.common.primitives.Ints;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Resolution of versioned entries in multi-release archives.
+ *
+ * <p>Archive is multi-release when its manifest has {@code Multi-Release: true} attribute. Its entries in
+ * {@code META-INF/versions/N/} directory override entries at root, when virtual machine supports release {@code N}.
+ * Class loaders open such archives with runtime release, so each resource name is served from highest applicable
+ * version. Listing of these archives contains names of versioned entries as if they were at root, so each class is
+ * listed once, and loaded or read from the version that class loader chooses.
+ */
+final class MultiRelease {
+	static final String VERSIONS_DIRECTORY = "META-INF/versions/";
+
+	/** Release of running virtual machine, as in {@code java.specification.version}. */
+	static final int RUNTIME_RELEASE = runtimeRelease();
+
+	private static final Attributes.Name MULTI_RELEASE_ATTRIBUTE = new Attributes.Name("Multi-Release");
+	private static final String LEGACY_VERSION_PREFIX = "1.";
+	private static final int BASE_RELEASE = 8;
+	private static final char SEPARATOR = '/';
+
+	private MultiRelease() {
+		// utility
+	}
+
+	static boolean isMultiRelease(Manifest manifest) {
+		return Boolean.parseBoolean(manifest.getMainAttributes().getValue(MULTI_RELEASE_ATTRIBUTE));
+	}
+
+	/*
+	 * Returns name that versioned entry overrides, if its version applies to specified release. Entries in versions
+	 * directory that are not in numbered subdirectory are never served by class loaders.
+	 */
+	static Optional<String> baseName(String versionedName, int release) {
+		int versionStart = VERSIONS_DIRECTORY.length();
+		int versionEnd = versionedName.indexOf(SEPARATOR, versionStart);
+		if (!versionedName.startsWith(VERSIONS_DIRECTORY) || versionEnd < 0) {
+			return Optional.empty();
+		}
+		@Nullable Integer version = Ints.tryParse(versionedName.substring(versionStart, versionEnd));
+		if (version == null || version <= BASE_RELEASE || version > release) {
+			return Optional.empty();
+		}
+		return Optional.of(versionedName.substring(versionEnd + 1));
+	}
+
+	private static int runtimeRelease() {
+		String specificationVersion = System.getProperty("java.specification.version", "");
+		// releases before 9 are reported as 1.8, 1.7 and so on
+		String releaseString = specificationVersion.startsWith(LEGACY_VERSION_PREFIX)
+			? specificationVersion.substring(LEGACY_VERSION_PREFIX.length()) : specificationVersion;
+		@Nullable Integer release = Ints.tryParse(releaseString);
+		return release == null ? BASE_RELEASE : release;
+	}
+}
@@ -0,0 +1,123 @@
+package org.perfectable.introspection.query;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Lists classpath elements concurrently, ahead of sequential scan.
+ *
+ * <p>Scan requests listings in classpath order, as it reaches elements. When element is requested, its listing is
+ * started if it wasn't already, and listings of following roots are started, so that at most {@code parallelism}
+ * listings are started but not yet requested. Elements linked by manifest are started as soon as listing of element
+ * that links them is done, as scan reaches them right after it. Listings are therefore started only a bounded
+ * distance ahead of the scan, and scan that is terminated early leaves only few of them unused.
+ *
+ * <p>Each element is listed at most once. Threads are created when needed and stop after being idle for a while,
+ * so that scan which is abandoned without closing its stream doesn't leave them running. Closing the listing stops
+ * listings in progress and abandons ones that were not started yet.
+ *
+ * <p>Listings must be requested from single thread, which is the one that consumes the scan.
+ */
+final class ParallelListing implements Function<Path, ElementListing> {
+	private static final String THREAD_NAME_FORMAT = "introspectable-scan-%d";
+	private static final long IDLE_THREAD_TIMEOUT_SECONDS = 1;
+
+	private final ImmutableList<Path> roots;
+	private final int parallelism;
+	private final Function<? super Path, ElementListing> lister;
+	private final ThreadPoolExecutor executor;
+	private final Map<Path, CompletableFuture<ElementListing>> started = new ConcurrentHashMap<>();
+	private final AtomicInteger startedAhead = new AtomicInteger();
+	private int nextRootIndex;
+
+	static ParallelListing of(ImmutableList<Path> roots, int parallelism,
+							  Function<? super Path, ElementListing> lister) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism,
+			IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+			new ThreadFactoryBuilder().setNameFormat(THREAD_NAME_FORMAT).setDaemon(true).build());
+		executor.allowCoreThreadTimeOut(true);
+		return new ParallelListing(roots, parallelism, lister, executor);
+	}
+
+	private ParallelListing(ImmutableList<Path> roots, int parallelism,
+							Function<? super Path, ElementListing> lister, ThreadPoolExecutor executor) {
+		this.roots = roots;
+		this.parallelism = parallelism;
+		this.lister = lister;
+		this.executor = executor;
+	}
+
+	@Override
+	public ElementListing apply(Path element) {
+		CompletableFuture<ElementListing> listing = start(element);
+		startedAhead.decrementAndGet();
+		startAhead();
+		try {
+			return listing.join();
+		}
+		catch (CompletionException e) {
+			@Nullable Throwable cause = e.getCause();
+			if (cause == null) {
+				throw e;
+			}
+			Throwables.throwIfUnchecked(cause);
+			throw new AssertionError(cause);
+		}
+	}
+
+	void close() {
+		executor.shutdownNow();
+	}
+
+	private void startAhead() {
+		while (nextRootIndex < roots.size() && startedAhead.get() < parallelism) {
+			start(roots.get(nextRootIndex));
+			nextRootIndex++;
+		}
+	}
+
+	private CompletableFuture<ElementListing> start(Path element) {
+		CompletableFuture<ElementListing> listing = new CompletableFuture<>();
+		@Nullable CompletableFuture<ElementListing> previous = started.putIfAbsent(element, listing);
+		if (previous != null) {
+			return previous;
+		}
+		startedAhead.incrementAndGet();
+		try {
+			executor.execute(() -> list(element, listing));
+		}
+		catch (RejectedExecutionException e) {
+			// listing was closed, and no one will wait for this element
+			listing.completeExceptionally(e);
+		}
+		return listing;
+	}
+
+	@SuppressWarnings("IllegalCatch")
+	private void list(Path element, CompletableFuture<ElementListing> listing) {
+		ElementListing result;
+		try {
+			result = lister.apply(element);
+		}
+		catch (Throwable e) {
+			listing.completeExceptionally(e);
+			return;
+		}
+		listing.complete(result);
+		result.linkedPaths().forEach(this::start);
+	}
+}
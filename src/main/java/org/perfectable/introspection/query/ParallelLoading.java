@@ -0,0 +1,93 @@
+package org.perfectable.introspection.query;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Applies loading function to class names concurrently, keeping order of names.
+ *
+ * <p>Names are taken from source lazily, and at most a few names per thread are loaded ahead of consumer, so
+ * short-circuiting operations don't load all remaining classes.
+ *
+ * <p>Threads are created for each stream, and are stopped when stream is exhausted or closed. If stream is
+ * abandoned, idle threads stop by themselves after short time.
+ *
+ * @param <T> type of loading result
+ */
+final class ParallelLoading<T> extends Spliterators.AbstractSpliterator<T> {
+	private static final String THREAD_NAME_FORMAT = "introspectable-load-%d";
+	private static final long KEEP_ALIVE_SECONDS = 1;
+	private static final int LOOKAHEAD_PER_THREAD = 2;
+
+	private final Iterator<String> names;
+	private final Function<? super String, T> loader;
+	private final ThreadPoolExecutor executor;
+	private final int lookahead;
+	private final Deque<CompletableFuture<T>> pending = new ArrayDeque<>();
+
+	static <T> Stream<T> load(Stream<String> names, Function<? super String, T> loader, int parallelism) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism,
+			KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+			new ThreadFactoryBuilder().setNameFormat(THREAD_NAME_FORMAT).setDaemon(true).build());
+		executor.allowCoreThreadTimeOut(true);
+		ParallelLoading<T> spliterator =
+			new ParallelLoading<>(names.iterator(), loader, executor, parallelism * LOOKAHEAD_PER_THREAD);
+		return StreamSupport.stream(spliterator, false)
+			.onClose(executor::shutdownNow)
+			.onClose(names::close);
+	}
+
+	private ParallelLoading(Iterator<String> names, Function<? super String, T> loader,
+							ThreadPoolExecutor executor, int lookahead) {
+		super(Long.MAX_VALUE, Spliterator.ORDERED);
+		this.names = names;
+		this.loader = loader;
+		this.executor = executor;
+		this.lookahead = lookahead;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		while (pending.size() < lookahead && names.hasNext()) {
+			String name = names.next();
+			pending.addLast(CompletableFuture.supplyAsync(() -> loader.apply(name), executor));
+		}
+		@Nullable CompletableFuture<T> next = pending.pollFirst();
+		if (next == null) {
+			executor.shutdown();
+			return false;
+		}
+		action.accept(await(next));
+		return true;
+	}
+
+	private static <T> T await(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		}
+		catch (CompletionException e) {
+			@Nullable Throwable cause = e.getCause();
+			if (cause == null) {
+				throw e;
+			}
+			Throwables.throwIfUnchecked(cause);
+			throw new AssertionError(cause);
+		}
+	}
+}
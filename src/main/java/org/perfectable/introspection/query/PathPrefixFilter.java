@@ -0,0 +1,115 @@
+package org.perfectable.introspection.query;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Restriction of resource paths to ones starting with all of specified prefixes.
+ *
+ * <p>This is package filter of {@link ClassQuery} pushed down to classpath listing. Directories that cannot contain
+ * matching resources are not traversed, and archive entries that don't match are not decoded.
+ */
+final class PathPrefixFilter {
+	static final PathPrefixFilter ALL = new PathPrefixFilter(ImmutableList.of());
+
+	private static final String SEPARATOR = "/";
+
+	private final ImmutableList<String> prefixes;
+	private final ImmutableList<byte[]> encodedPrefixes;
+
+	private PathPrefixFilter(ImmutableList<String> prefixes) {
+		this.prefixes = prefixes;
+		ImmutableList.Builder<byte[]> encodedBuilder = ImmutableList.builderWithExpectedSize(prefixes.size());
+		for (String prefix : prefixes) {
+			encodedBuilder.add(prefix.getBytes(StandardCharsets.UTF_8));
+		}
+		this.encodedPrefixes = encodedBuilder.build();
+	}
+
+	PathPrefixFilter and(String prefix) {
+		return new PathPrefixFilter(ImmutableList.<String>builder().addAll(prefixes).add(prefix).build());
+	}
+
+	PathPrefixFilter and(PathPrefixFilter other) {
+		if (!other.isRestricted()) {
+			return this;
+		}
+		return new PathPrefixFilter(ImmutableList.<String>builder().addAll(prefixes).addAll(other.prefixes).build());
+	}
+
+	PathPrefixFilter within(String base) {
+		if (prefixes.isEmpty()) {
+			return new PathPrefixFilter(ImmutableList.of(base));
+		}
+		ImmutableList<String> basedPrefixes = prefixes.stream()
+			.map(prefix -> base + prefix)
+			.collect(ImmutableList.toImmutableList());
+		return new PathPrefixFilter(basedPrefixes);
+	}
+
+	boolean isRestricted() {
+		return !prefixes.isEmpty();
+	}
+
+	String longestPrefix() {
+		String result = "";
+		for (String prefix : prefixes) {
+			if (prefix.length() > result.length()) {
+				result = prefix;
+			}
+		}
+		return result;
+	}
+
+	boolean matches(String path) {
+		for (String prefix : prefixes) {
+			if (!path.startsWith(prefix)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	boolean matches(ByteBuffer buffer, int start, int length) {
+		for (byte[] prefix : encodedPrefixes) {
+			if (length < prefix.length) {
+				return false;
+			}
+			for (int i = 0; i < prefix.length; i++) {
+				if (buffer.get(start + i) != prefix[i]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	boolean mayContainPackage(String packagePath) {
+		String packagePrefix = packagePath + SEPARATOR;
+		for (String prefix : prefixes) {
+			// either package is inside prefix, or prefix selects classes of this package by name
+			boolean prefixInPackage = prefix.startsWith(packagePrefix)
+				&& prefix.indexOf(SEPARATOR, packagePrefix.length()) < 0;
+			if (!packagePrefix.startsWith(prefix) && !prefixInPackage) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	boolean mayContain(String directoryPath) {
+		if (directoryPath.isEmpty()) {
+			return true;
+		}
+		String directoryPrefix = directoryPath + SEPARATOR;
+		for (String prefix : prefixes) {
+			// either directory is inside prefix, or prefix is inside directory
+			if (!directoryPrefix.startsWith(prefix) && !prefix.startsWith(directoryPrefix)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
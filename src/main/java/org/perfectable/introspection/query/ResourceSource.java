@@ -0,0 +1,18 @@
+package org.perfectable.introspection.query;
+
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+interface ResourceSource {
+	Stream<String> entries(ScanMonitor monitor);
+
+	boolean contains(String candidate);
+
+	ResourceSource indexedIn(Path indexDirectory);
+
+	ResourceSource watchingDirectories();
+
+	ResourceSource scannedInParallel(int parallelism);
+
+	ResourceSource withPathPrefix(String pathPrefix);
+}
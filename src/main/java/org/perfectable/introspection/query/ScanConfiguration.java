@@ -0,0 +1,69 @@
+package org.perfectable.introspection.query;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Settings on how classpath elements are listed by {@link UrlResourceSource}.
+ */
+final class ScanConfiguration {
+	static final ScanConfiguration DEFAULT = new ScanConfiguration(null, null, 1, PathPrefixFilter.ALL);
+
+	private final @Nullable ClasspathIndex index;
+	private final DirectoryWatcher.@Nullable Registration watcher;
+	private final int parallelism;
+	private final PathPrefixFilter pathFilter;
+
+	private ScanConfiguration(@Nullable ClasspathIndex index, DirectoryWatcher.@Nullable Registration watcher,
+							  int parallelism, PathPrefixFilter pathFilter) {
+		this.index = index;
+		this.watcher = watcher;
+		this.parallelism = parallelism;
+		this.pathFilter = pathFilter;
+	}
+
+	ScanConfiguration withIndex(ClasspathIndex newIndex) {
+		return new ScanConfiguration(newIndex, watcher, parallelism, pathFilter);
+	}
+
+	ScanConfiguration withWatcher(DirectoryWatcher.Registration newWatcher) {
+		return new ScanConfiguration(index, newWatcher, parallelism, pathFilter);
+	}
+
+	ScanConfiguration withParallelism(int newParallelism) {
+		return new ScanConfiguration(index, watcher, newParallelism, pathFilter);
+	}
+
+	ScanConfiguration withPathPrefix(String pathPrefix) {
+		return new ScanConfiguration(index, watcher, parallelism, pathFilter.and(pathPrefix));
+	}
+
+	boolean isParallel() {
+		return parallelism > 1;
+	}
+
+	int parallelism() {
+		return parallelism;
+	}
+
+	PathPrefixFilter pathFilter() {
+		return pathFilter;
+	}
+
+	ElementListing list(Path element) {
+		if (Files.isDirectory(element)) {
+			if (watcher == null) {
+				return ElementListing.ofDirectory(element, pathFilter);
+			}
+			// watched listing is complete, so it can be shared by queries for different packages
+			return watcher.listing(element).restrictedTo(pathFilter);
+		}
+		if (index == null) {
+			return ElementListing.ofArchive(element, pathFilter);
+		}
+		// index always holds complete listing, so it can be shared by queries for different packages
+		return index.listing(element).restrictedTo(pathFilter);
+	}
+}
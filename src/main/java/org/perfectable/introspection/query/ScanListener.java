@@ -0,0 +1,22 @@
+package org.perfectable.introspection.query;
+
+/**
+ * Receives statistics of {@link ClassQuery} executions.
+ *
+ * <p>Listener is registered with {@link ClassQuery#reportingTo}, and is notified once for each stream obtained from
+ * query, when stream is exhausted or closed. Streams that are closed before being exhausted report statistics of
+ * the part that was actually processed. Streams that are neither exhausted nor closed, like ones used by
+ * {@link ClassQuery#isPresent}, are not reported.
+ *
+ * <p>Listener can be called from any thread that consumed or closed the stream, and might be called concurrently
+ * for different executions of the same query.
+ */
+@FunctionalInterface
+public interface ScanListener {
+	/**
+	 * Receives statistics of completed query execution.
+	 *
+	 * @param statistics statistics of the execution
+	 */
+	void scanCompleted(ScanStatistics statistics);
+}
@@ -0,0 +1,260 @@
+package org.perfectable.introspection.query;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.collect.ImmutableList;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Collects statistics of single query execution and reports them to {@link ScanListener}.
+ *
+ * <p>Monitor is created for each stream obtained from query. Unmonitored queries use {@link #NONE}, which ignores
+ * all events.
+ *
+ * <p>Classes are attributed to classpath element they were listed from, using the same first-occurrence rule as
+ * entry listing. Ancestors of candidates, which are read to check subtype restrictions but not listed, are only
+ * counted in totals.
+ */
+abstract class ScanMonitor {
+	static final ScanMonitor NONE = new None();
+
+	static ScanMonitor reportingTo(ScanListener listener) {
+		return new Reporting(listener);
+	}
+
+	/** Wraps lister so that time of listing each element is measured. Wrapped lister can be called concurrently. */
+	abstract Function<? super Path, ElementListing> timing(Function<? super Path, ElementListing> lister);
+
+	/** Wraps lister so that each listed element is recorded. Wrapped lister must be called in classpath order. */
+	abstract Function<? super Path, ElementListing> recording(Function<? super Path, ElementListing> lister);
+
+	abstract void classFound(String className);
+
+	abstract void nameFilterPassed(String className);
+
+	abstract void classFileRead(String className, long bytes);
+
+	abstract void preLoadFilterPassed(String className);
+
+	abstract void classLoaded(String className);
+
+	abstract void postLoadFilterPassed(String className);
+
+	/** Adapts result stream, so that statistics are reported when it is exhausted or closed. */
+	abstract <T> Stream<T> reportingOnCompletion(Stream<T> stream);
+
+	private static final class None extends ScanMonitor {
+		@Override
+		Function<? super Path, ElementListing> timing(Function<? super Path, ElementListing> lister) {
+			return lister;
+		}
+
+		@Override
+		Function<? super Path, ElementListing> recording(Function<? super Path, ElementListing> lister) {
+			return lister;
+		}
+
+		@Override
+		void classFound(String className) {
+			// not monitored
+		}
+
+		@Override
+		void nameFilterPassed(String className) {
+			// not monitored
+		}
+
+		@Override
+		void classFileRead(String className, long bytes) {
+			// not monitored
+		}
+
+		@Override
+		void preLoadFilterPassed(String className) {
+			// not monitored
+		}
+
+		@Override
+		void classLoaded(String className) {
+			// not monitored
+		}
+
+		@Override
+		void postLoadFilterPassed(String className) {
+			// not monitored
+		}
+
+		@Override
+		<T> Stream<T> reportingOnCompletion(Stream<T> stream) {
+			return stream;
+		}
+	}
+
+	private static final class Reporting extends ScanMonitor {
+		private static final String CLASS_FILE_SUFFIX = ".class";
+
+		private final ScanListener listener;
+		private final AtomicBoolean reported = new AtomicBoolean();
+		private final Map<Path, Duration> listingTimes = new ConcurrentHashMap<>();
+		private final Queue<ElementCounters> elements = new ConcurrentLinkedQueue<>();
+		private final Map<String, ElementCounters> classOrigins = new ConcurrentHashMap<>();
+		private final LongAdder classesFound = new LongAdder();
+		private final LongAdder classesPassingNameFilter = new LongAdder();
+		private final LongAdder classesPassingPreLoadFilter = new LongAdder();
+		private final LongAdder classesLoaded = new LongAdder();
+		private final LongAdder classesPassingPostLoadFilter = new LongAdder();
+		private final LongAdder classFilesRead = new LongAdder();
+		private final LongAdder bytesRead = new LongAdder();
+
+		Reporting(ScanListener listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		Function<? super Path, ElementListing> timing(Function<? super Path, ElementListing> lister) {
+			return element -> {
+				long start = System.nanoTime();
+				ElementListing listing = lister.apply(element);
+				listingTimes.put(element, Duration.ofNanos(System.nanoTime() - start));
+				return listing;
+			};
+		}
+
+		@Override
+		Function<? super Path, ElementListing> recording(Function<? super Path, ElementListing> lister) {
+			return element -> {
+				ElementListing listing = lister.apply(element);
+				Duration listingTime = listingTimes.getOrDefault(element, Duration.ZERO);
+				ElementCounters counters = new ElementCounters(element, listingTime, listing.entryCount());
+				elements.add(counters);
+				for (String entry : listing.entries()) {
+					if (entry.endsWith(CLASS_FILE_SUFFIX)) {
+						classOrigins.putIfAbsent(entry, counters);
+					}
+				}
+				return listing;
+			};
+		}
+
+		@Override
+		void classFound(String className) {
+			classesFound.increment();
+		}
+
+		@Override
+		void nameFilterPassed(String className) {
+			classesPassingNameFilter.increment();
+		}
+
+		@Override
+		void classFileRead(String className, long bytes) {
+			classFilesRead.increment();
+			bytesRead.add(bytes);
+			@Nullable ElementCounters origin = origin(className);
+			if (origin != null) {
+				origin.bytesRead.add(bytes);
+			}
+		}
+
+		@Override
+		void preLoadFilterPassed(String className) {
+			classesPassingPreLoadFilter.increment();
+			@Nullable ElementCounters origin = origin(className);
+			if (origin != null) {
+				origin.classesPassingPreLoadFilter.increment();
+			}
+		}
+
+		@Override
+		void classLoaded(String className) {
+			classesLoaded.increment();
+			@Nullable ElementCounters origin = origin(className);
+			if (origin != null) {
+				origin.classesLoaded.increment();
+			}
+		}
+
+		@Override
+		void postLoadFilterPassed(String className) {
+			classesPassingPostLoadFilter.increment();
+		}
+
+		@Override
+		<T> Stream<T> reportingOnCompletion(Stream<T> stream) {
+			Spliterator<T> spliterator = new CompletionSpliterator<>(stream.spliterator(), this::report);
+			return StreamSupport.stream(spliterator, false)
+				.onClose(stream::close)
+				.onClose(this::report);
+		}
+
+		private @Nullable ElementCounters origin(String className) {
+			return classOrigins.get(className.replace('.', '/') + CLASS_FILE_SUFFIX);
+		}
+
+		private void report() {
+			if (!reported.compareAndSet(false, true)) {
+				return;
+			}
+			ImmutableList<ScanStatistics.Element> elementStatistics = elements.stream()
+				.map(ElementCounters::toStatistics)
+				.collect(ImmutableList.toImmutableList());
+			ScanStatistics statistics = new ScanStatistics(elementStatistics, classesFound.sum(),
+				classesPassingNameFilter.sum(), classesPassingPreLoadFilter.sum(), classesLoaded.sum(),
+				classesPassingPostLoadFilter.sum(), classFilesRead.sum(), bytesRead.sum());
+			listener.scanCompleted(statistics);
+		}
+	}
+
+	private static final class ElementCounters {
+		private final Path path;
+		private final Duration listingTime;
+		private final int entryCount;
+		private final LongAdder bytesRead = new LongAdder();
+		private final LongAdder classesPassingPreLoadFilter = new LongAdder();
+		private final LongAdder classesLoaded = new LongAdder();
+
+		ElementCounters(Path path, Duration listingTime, int entryCount) {
+			this.path = path;
+			this.listingTime = listingTime;
+			this.entryCount = entryCount;
+		}
+
+		ScanStatistics.Element toStatistics() {
+			return new ScanStatistics.Element(path, listingTime, entryCount, bytesRead.sum(),
+				classesPassingPreLoadFilter.sum(), classesLoaded.sum());
+		}
+	}
+
+	private static final class CompletionSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+		private final Spliterator<T> wrapped;
+		private final Runnable completion;
+
+		CompletionSpliterator(Spliterator<T> wrapped, Runnable completion) {
+			super(wrapped.estimateSize(), wrapped.characteristics() & Spliterator.ORDERED);
+			this.wrapped = wrapped;
+			this.completion = completion;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if (wrapped.tryAdvance(action)) {
+				return true;
+			}
+			completion.run();
+			return false;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package org.perfectable.introspection.query;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Statistics of single {@link ClassQuery} execution, reported to {@link ScanListener}.
+ *
+ * <p>Totals show how many classes entered and passed each stage of the query. Number of classes dropped by a stage
+ * is the difference between number of classes that passed the previous stage and the stage itself. Classes that
+ * were selected for loading, but failed to load, are counted in {@link #classesPassingPreLoadFilter} but not in
+ * {@link #classesLoaded}.
+ *
+ * <p>Statistics for each classpath element are also provided, so that element that is slow to list, or that
+ * contributes most candidates, can be found.
+ */
+public final class ScanStatistics {
+	private final ImmutableList<Element> elements;
+	private final long classesFound;
+	private final long classesPassingNameFilter;
+	private final long classesPassingPreLoadFilter;
+	private final long classesLoaded;
+	private final long classesPassingPostLoadFilter;
+	private final long classFilesRead;
+	private final long bytesRead;
+
+	@SuppressWarnings("ParameterNumber")
+	ScanStatistics(ImmutableList<Element> elements, long classesFound, long classesPassingNameFilter,
+				   long classesPassingPreLoadFilter, long classesLoaded, long classesPassingPostLoadFilter,
+				   long classFilesRead, long bytesRead) {
+		this.elements = elements;
+		this.classesFound = classesFound;
+		this.classesPassingNameFilter = classesPassingNameFilter;
+		this.classesPassingPreLoadFilter = classesPassingPreLoadFilter;
+		this.classesLoaded = classesLoaded;
+		this.classesPassingPostLoadFilter = classesPassingPostLoadFilter;
+		this.classFilesRead = classFilesRead;
+		this.bytesRead = bytesRead;
+	}
+
+	/**
+	 * Statistics of each classpath element that was listed, in classpath order.
+	 *
+	 * @return statistics of listed elements
+	 */
+	public ImmutableList<Element> elements() {
+		return elements;
+	}
+
+	/**
+	 * Total time spent on listing classpath elements.
+	 *
+	 * <p>When classpath is scanned in parallel, this is sum of time of all listing threads.
+	 *
+	 * @return sum of listing times of all elements
+	 */
+	public Duration listingTime() {
+		return elements.stream()
+			.map(Element::listingTime)
+			.reduce(Duration.ZERO, Duration::plus);
+	}
+
+	/**
+	 * Number of class files found in classpath elements, before any filtering.
+	 *
+	 * @return number of found classes
+	 */
+	public long classesFound() {
+		return classesFound;
+	}
+
+	/**
+	 * Number of classes that passed package and class name restrictions.
+	 *
+	 * @return number of classes that passed name filter
+	 */
+	public long classesPassingNameFilter() {
+		return classesPassingNameFilter;
+	}
+
+	/**
+	 * Number of classes that passed restrictions on unloaded classes, like subtype and annotation restrictions.
+	 *
+	 * @return number of classes selected for loading
+	 */
+	public long classesPassingPreLoadFilter() {
+		return classesPassingPreLoadFilter;
+	}
+
+	/**
+	 * Number of classes that were successfully loaded.
+	 *
+	 * @return number of loaded classes
+	 */
+	public long classesLoaded() {
+		return classesLoaded;
+	}
+
+	/**
+	 * Number of classes that passed restrictions on loaded classes, and were returned by query.
+	 *
+	 * @return number of returned classes
+	 */
+	public long classesPassingPostLoadFilter() {
+		return classesPassingPostLoadFilter;
+	}
+
+	/**
+	 * Number of class files that were read to check restrictions on unloaded classes.
+	 *
+	 * <p>This includes class files of ancestors of candidates, but not classes which headers were already known
+	 * from previous queries or build-time index.
+	 *
+	 * @return number of read class files
+	 */
+	public long classFilesRead() {
+		return classFilesRead;
+	}
+
+	/**
+	 * Number of bytes of class files read to check restrictions on unloaded classes.
+	 *
+	 * @return number of bytes read
+	 */
+	public long bytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Statistics of single classpath element.
+	 */
+	public static final class Element {
+		private final Path path;
+		private final Duration listingTime;
+		private final int entryCount;
+		private final long bytesRead;
+		private final long classesPassingPreLoadFilter;
+		private final long classesLoaded;
+
+		Element(Path path, Duration listingTime, int entryCount, long bytesRead,
+				long classesPassingPreLoadFilter, long classesLoaded) {
+			this.path = path;
+			this.listingTime = listingTime;
+			this.entryCount = entryCount;
+			this.bytesRead = bytesRead;
+			this.classesPassingPreLoadFilter = classesPassingPreLoadFilter;
+			this.classesLoaded = classesLoaded;
+		}
+
+		/**
+		 * Path of the element, either directory or archive.
+		 *
+		 * @return element path
+		 */
+		public Path path() {
+			return path;
+		}
+
+		/**
+		 * Time spent on listing the element.
+		 *
+		 * @return listing time
+		 */
+		public Duration listingTime() {
+			return listingTime;
+		}
+
+		/**
+		 * Number of entries listed from the element, including entries that are not class files.
+		 *
+		 * <p>When query is restricted to package, only entries in this package are listed.
+		 *
+		 * @return number of entries
+		 */
+		public int entryCount() {
+			return entryCount;
+		}
+
+		/**
+		 * Number of bytes of class files from this element read to check restrictions on unloaded classes.
+		 *
+		 * @return number of bytes read
+		 */
+		public long bytesRead() {
+			return bytesRead;
+		}
+
+		/**
+		 * Number of classes from this element that passed restrictions on unloaded classes.
+		 *
+		 * @return number of classes selected for loading
+		 */
+		public long classesPassingPreLoadFilter() {
+			return classesPassingPreLoadFilter;
+		}
+
+		/**
+		 * Number of classes from this element that were successfully loaded.
+		 *
+		 * @return number of loaded classes
+		 */
+		public long classesLoaded() {
+			return classesLoaded;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package org.perfectable.introspection.query;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableList;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Supertype relations between classes, resolved from their class file headers.
+ *
+ * <p>Hierarchy is created once per query execution and resolves candidates one at a time, as they are requested, so
+ * execution that is terminated early does not read headers of classes that it never reached.
+ *
+ * <p>For each supertype, hierarchy keeps a table of classes that were already resolved against it. Resolving
+ * a class walks its ancestors and records result for each of them, so every ancestor is resolved at most once per
+ * supertype, and candidates sharing ancestors reuse their results. Each header is also read at most once.
+ *
+ * <p>Hierarchy doesn't keep subtype edges to answer query by walking down from the supertype. Such walk would need
+ * headers of all candidates to be read before first result is known, as any of them can be a subtype, and could not
+ * be cut short by operations like {@link ClassQuery#option} that only need some of the results. Walking up from
+ * each candidate reads the same headers in full scan, and ancestors are shared through the table.
+ *
+ * <p>Class is {@link Resolution#UNRESOLVABLE} when it is not a subtype through any readable ancestor, but header of
+ * itself or some of its ancestors cannot be read, so it is not known whether it is a subtype.
+ *
+ * <p>This class is thread-safe, so that it can be used by parallel streams.
+ */
+final class TypeHierarchy {
+	enum Resolution {
+		SUBTYPE,
+		NOT_SUBTYPE,
+		UNRESOLVABLE
+	}
+
+	private final ClassFileSource classFiles;
+	private final Map<String, Optional<ClassFileHeader>> headers = new HashMap<>();
+	private final Map<String, Map<String, Resolution>> resolutions = new HashMap<>();
+
+	static TypeHierarchy of(ClassFileSource classFiles) {
+		return new TypeHierarchy(classFiles);
+	}
+
+	private TypeHierarchy(ClassFileSource classFiles) {
+		this.classFiles = classFiles;
+	}
+
+	synchronized Optional<ClassFileHeader> header(String className) {
+		@Nullable Optional<ClassFileHeader> header = headers.get(className);
+		if (header == null) {
+			header = classFiles.header(className);
+			headers.put(className, header);
+		}
+		return header;
+	}
+
+	synchronized Resolution resolve(String className, String supertypeName) {
+		Map<String, Resolution> table = resolutions.computeIfAbsent(supertypeName, name -> new HashMap<>());
+		return resolve(className, supertypeName, table);
+	}
+
+	private Resolution resolve(String className, String supertypeName, Map<String, Resolution> table) {
+		@Nullable Resolution known = table.get(className);
+		if (known != null) {
+			return known;
+		}
+		Resolution result = walkAncestors(className, supertypeName, table);
+		table.put(className, result);
+		return result;
+	}
+
+	private Resolution walkAncestors(String className, String supertypeName, Map<String, Resolution> table) {
+		if (className.equals(supertypeName)) {
+			return Resolution.SUBTYPE;
+		}
+		Optional<ClassFileHeader> header = header(className);
+		if (!header.isPresent()) {
+			return Resolution.UNRESOLVABLE;
+		}
+		// provisional result guards against cycles, which can only occur in malformed class files
+		table.put(className, Resolution.NOT_SUBTYPE);
+		Resolution result = Resolution.NOT_SUBTYPE;
+		for (String directSupertype : directSupertypes(header.get())) {
+			Resolution ancestorResolution = resolve(directSupertype, supertypeName, table);
+			if (ancestorResolution == Resolution.SUBTYPE) {
+				return Resolution.SUBTYPE;
+			}
+			if (ancestorResolution == Resolution.UNRESOLVABLE) {
+				result = Resolution.UNRESOLVABLE;
+			}
+		}
+		return result;
+	}
+
+	private static ImmutableList<String> directSupertypes(ClassFileHeader header) {
+		ImmutableList.Builder<String> result = ImmutableList.builder();
+		header.superclassName().ifPresent(result::add);
+		return result.addAll(header.interfaceNames()).build();
+	}
+}
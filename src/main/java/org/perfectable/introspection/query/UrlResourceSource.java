@@ -0,0 +1,114 @@
+package org.perfectable.introspection.query;
+
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.annotations.concurrent.LazyInit;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+abstract class UrlResourceSource implements ResourceSource {
+	private final ScanConfiguration configuration;
+
+	@LazyInit
+	private volatile @Nullable EntrySet entrySet;
+
+	@LazyInit
+	private volatile @Nullable Roots roots;
+
+	protected UrlResourceSource(ScanConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	@Override
+	public Stream<String> entries(ScanMonitor monitor) {
+		ImmutableList<Path> currentRoots = roots();
+		Function<? super Path, ElementListing> timedLister = monitor.timing(configuration::list);
+		if (!configuration.isParallel()) {
+			return StreamSupport.stream(EntrySpliterator.of(currentRoots, monitor.recording(timedLister)), false);
+		}
+		// listings are merged in order they are requested by the scan, so order is the same as in sequential scan
+		ParallelListing parallelListing =
+			ParallelListing.of(currentRoots, configuration.parallelism(), timedLister);
+		return StreamSupport.stream(EntrySpliterator.of(currentRoots, monitor.recording(parallelListing)), false)
+			.onClose(parallelListing::close);
+	}
+
+	@Override
+	public boolean contains(String candidate) {
+		return currentEntrySet().contains(candidate);
+	}
+
+	@Override
+	public ResourceSource indexedIn(Path indexDirectory) {
+		return withConfiguration(configuration.withIndex(ClasspathIndex.at(indexDirectory)));
+	}
+
+	@Override
+	public ResourceSource watchingDirectories() {
+		return withConfiguration(configuration.withWatcher(DirectoryWatcher.INSTANCE.register()));
+	}
+
+	@Override
+	public ResourceSource scannedInParallel(int parallelism) {
+		return withConfiguration(configuration.withParallelism(parallelism));
+	}
+
+	@Override
+	public ResourceSource withPathPrefix(String pathPrefix) {
+		return withConfiguration(configuration.withPathPrefix(pathPrefix));
+	}
+
+	private EntrySet currentEntrySet() {
+		ImmutableList<Path> roots = roots();
+		@Nullable EntrySet cached = entrySet;
+		if (cached != null && cached.isBuiltFor(roots)) {
+			return cached;
+		}
+		// concurrent callers might build the set twice, but both results are equivalent
+		EntrySet built = EntrySet.build(roots, configuration::list);
+		entrySet = built;
+		return built;
+	}
+
+	private ImmutableList<Path> roots() {
+		Object key = rootsKey();
+		@Nullable Roots cached = roots;
+		if (cached != null && cached.key.equals(key)) {
+			return cached.paths;
+		}
+		ImmutableList.Builder<Path> rootsBuilder = ImmutableList.builder();
+		generatePaths(rootsBuilder::add);
+		Roots generated = new Roots(key, rootsBuilder.build());
+		roots = generated;
+		return generated.paths;
+	}
+
+	protected final PathPrefixFilter pathFilter() {
+		return configuration.pathFilter();
+	}
+
+	/*
+	 * Returns value that changes whenever paths generated by this source could change. It is checked on each scan
+	 * and check of resource presence, so it should be cheap to compute, and paths are only generated again when
+	 * it is different from the one they were generated for.
+	 */
+	protected abstract Object rootsKey();
+
+	protected abstract void generatePaths(Consumer<Path> pathAction);
+
+	protected abstract UrlResourceSource withConfiguration(ScanConfiguration newConfiguration);
+
+	private static final class Roots {
+		private final Object key;
+		private final ImmutableList<Path> paths;
+
+		Roots(Object key, ImmutableList<Path> paths) {
+			this.key = key;
+			this.paths = paths;
+		}
+	}
+}
@@ -0,0 +1,322 @@
+package org.perfectable.introspection.query;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.errorprone.annotations.concurrent.LazyInit;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Read-only view of zip archive content, that reads only central directory.
+ *
+ * <p>Archive is memory-mapped, and only End-Of-Central-Directory record and central directory headers are parsed.
+ * Entry data is only touched when it's explicitly read. Archives stored inside archive can be viewed with
+ * {@link #nested}, which for uncompressed entries uses the outer archive content directly. Multi-release archives
+ * can be listed with their versioned entries resolved for specific release, in the same single pass over central
+ * directory.
+ *
+ * <p>Entries are found by name in a map from names to their central directory headers, which is built on first
+ * lookup, so that reading many entries, like libraries nested in executable archive, doesn't scan directory for
+ * each of them.
+ *
+ * <p>Archives that are larger than 2GB or use ZIP64 extensions are not supported, and creating view for them
+ * throws {@link ZipException}.
+ */
+final class ZipArchive {
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int END_LENGTH = 22;
+	private static final int END_ENTRY_COUNT_OFFSET = 10;
+	private static final int END_DIRECTORY_SIZE_OFFSET = 12;
+	private static final int END_DIRECTORY_START_OFFSET = 16;
+	private static final int END_COMMENT_LENGTH_OFFSET = 20;
+	private static final int MAXIMAL_COMMENT_LENGTH = 0xFFFF;
+
+	private static final int HEADER_SIGNATURE = 0x02014b50;
+	private static final int HEADER_LENGTH = 46;
+	private static final int HEADER_METHOD_OFFSET = 10;
+	private static final int HEADER_COMPRESSED_SIZE_OFFSET = 20;
+	private static final int HEADER_SIZE_OFFSET = 24;
+	private static final int HEADER_NAME_LENGTH_OFFSET = 28;
+	private static final int HEADER_EXTRA_LENGTH_OFFSET = 30;
+	private static final int HEADER_COMMENT_LENGTH_OFFSET = 32;
+	private static final int HEADER_LOCAL_OFFSET = 42;
+
+	private static final int LOCAL_SIGNATURE = 0x04034b50;
+	private static final int LOCAL_LENGTH = 30;
+	private static final int LOCAL_NAME_LENGTH_OFFSET = 26;
+	private static final int LOCAL_EXTRA_LENGTH_OFFSET = 28;
+
+	private static final int SHORT_MASK = 0xFFFF;
+	private static final long INT_MASK = 0xFFFFFFFFL;
+	private static final int METHOD_STORED = 0;
+	private static final int METHOD_DEFLATED = 8;
+	private static final String DIRECTORY_SUFFIX = "/";
+	private static final PathPrefixFilter VERSIONED_FILTER = PathPrefixFilter.ALL.and(MultiRelease.VERSIONS_DIRECTORY);
+
+	private final ByteBuffer content;
+	private final int directoryStart;
+	private final int entryCount;
+
+	@LazyInit
+	private @Nullable ImmutableMap<String, Integer> headers;
+
+	static ZipArchive map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new ZipException("Archive is too large to be mapped: " + file);
+			}
+			return of(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		}
+	}
+
+	static ZipArchive of(ByteBuffer content) throws ZipException {
+		ByteBuffer ordered = content.slice().order(ByteOrder.LITTLE_ENDIAN);
+		int end = findEnd(ordered);
+		int entryCount = unsignedShort(ordered, end + END_ENTRY_COUNT_OFFSET);
+		int directorySize = unsignedInt(ordered, end + END_DIRECTORY_SIZE_OFFSET);
+		int directoryStart = unsignedInt(ordered, end + END_DIRECTORY_START_OFFSET);
+		if (entryCount == SHORT_MASK || directoryStart + directorySize > end) {
+			throw new ZipException("Unsupported or malformed central directory");
+		}
+		return new ZipArchive(ordered, directoryStart, entryCount);
+	}
+
+	private ZipArchive(ByteBuffer content, int directoryStart, int entryCount) {
+		this.content = content;
+		this.directoryStart = directoryStart;
+		this.entryCount = entryCount;
+	}
+
+	ImmutableList<String> fileNames() throws ZipException {
+		return fileNames(PathPrefixFilter.ALL);
+	}
+
+	ImmutableList<String> fileNames(PathPrefixFilter filter) throws ZipException {
+		ImmutableList.Builder<String> result = ImmutableList.builder();
+		int header = directoryStart;
+		for (int i = 0; i < entryCount; i++) {
+			checkSignature(header, HEADER_SIGNATURE, HEADER_LENGTH);
+			if (headerNameMatches(header, filter)) {
+				String name = headerName(header);
+				if (!name.endsWith(DIRECTORY_SUFFIX)) {
+					result.add(name);
+				}
+			}
+			header = nextHeader(header);
+		}
+		return result.build();
+	}
+
+	ImmutableList<String> fileNames(PathPrefixFilter filter, int release) throws ZipException {
+		// root and versioned entries of the same class are listed once, as class loader serves only one of them
+		Set<String> result = new LinkedHashSet<>();
+		int header = directoryStart;
+		for (int i = 0; i < entryCount; i++) {
+			checkSignature(header, HEADER_SIGNATURE, HEADER_LENGTH);
+			if (headerNameMatches(header, VERSIONED_FILTER)) {
+				Optional<String> baseName = MultiRelease.baseName(headerName(header), release);
+				if (baseName.isPresent() && isFileMatching(baseName.get(), filter)) {
+					result.add(baseName.get());
+				}
+			}
+			else if (headerNameMatches(header, filter)) {
+				String name = headerName(header);
+				if (!name.endsWith(DIRECTORY_SUFFIX)) {
+					result.add(name);
+				}
+			}
+			header = nextHeader(header);
+		}
+		return ImmutableList.copyOf(result);
+	}
+
+	Optional<byte[]> read(String name) throws ZipException {
+		OptionalInt header = findHeader(name);
+		if (!header.isPresent()) {
+			return Optional.empty();
+		}
+		return Optional.of(readData(header.getAsInt()));
+	}
+
+	Optional<ZipArchive> nested(String name) throws ZipException {
+		OptionalInt header = findHeader(name);
+		if (!header.isPresent()) {
+			return Optional.empty();
+		}
+		return Optional.of(of(readBuffer(header.getAsInt())));
+	}
+
+	private OptionalInt findHeader(String name) throws ZipException {
+		@Nullable Integer header = headers().get(name);
+		return header == null ? OptionalInt.empty() : OptionalInt.of(header);
+	}
+
+	private ImmutableMap<String, Integer> headers() throws ZipException {
+		@Nullable ImmutableMap<String, Integer> cached = headers;
+		if (cached != null) {
+			return cached;
+		}
+		// if name is repeated, first entry is used, like in linear search
+		Map<String, Integer> result = new HashMap<>(entryCount);
+		int header = directoryStart;
+		for (int i = 0; i < entryCount; i++) {
+			checkSignature(header, HEADER_SIGNATURE, HEADER_LENGTH);
+			result.putIfAbsent(headerName(header), header);
+			header = nextHeader(header);
+		}
+		// concurrent callers might build the map twice, but both results are equal
+		ImmutableMap<String, Integer> built = ImmutableMap.copyOf(result);
+		headers = built;
+		return built;
+	}
+
+	private String headerName(int header) throws ZipException {
+		int nameLength = unsignedShort(content, header + HEADER_NAME_LENGTH_OFFSET);
+		byte[] nameBytes = copy(header + HEADER_LENGTH, nameLength);
+		return new String(nameBytes, StandardCharsets.UTF_8);
+	}
+
+	private boolean headerNameMatches(int header, PathPrefixFilter filter) throws ZipException {
+		if (!filter.isRestricted()) {
+			return true;
+		}
+		int nameLength = unsignedShort(content, header + HEADER_NAME_LENGTH_OFFSET);
+		checkRange(header + HEADER_LENGTH, nameLength);
+		// prefix is compared on encoded name, so that names of skipped entries are never decoded
+		return filter.matches(content, header + HEADER_LENGTH, nameLength);
+	}
+
+	private static boolean isFileMatching(String name, PathPrefixFilter filter) {
+		return !name.isEmpty() && !name.endsWith(DIRECTORY_SUFFIX) && filter.matches(name);
+	}
+
+	private int nextHeader(int header) {
+		return header + HEADER_LENGTH
+			+ unsignedShort(content, header + HEADER_NAME_LENGTH_OFFSET)
+			+ unsignedShort(content, header + HEADER_EXTRA_LENGTH_OFFSET)
+			+ unsignedShort(content, header + HEADER_COMMENT_LENGTH_OFFSET);
+	}
+
+	private byte[] readData(int header) throws ZipException {
+		int method = unsignedShort(content, header + HEADER_METHOD_OFFSET);
+		int compressedSize = unsignedInt(content, header + HEADER_COMPRESSED_SIZE_OFFSET);
+		int size = unsignedInt(content, header + HEADER_SIZE_OFFSET);
+		byte[] compressed = copy(dataStart(header), compressedSize);
+		switch (method) {
+			case METHOD_STORED:
+				return compressed;
+			case METHOD_DEFLATED:
+				return inflate(compressed, size);
+			default:
+				throw new ZipException("Unsupported compression method " + method);
+		}
+	}
+
+	private ByteBuffer readBuffer(int header) throws ZipException {
+		int method = unsignedShort(content, header + HEADER_METHOD_OFFSET);
+		if (method != METHOD_STORED) {
+			return ByteBuffer.wrap(readData(header));
+		}
+		// stored entry is viewed in place, so nested archive is neither copied nor extracted
+		int size = unsignedInt(content, header + HEADER_COMPRESSED_SIZE_OFFSET);
+		int start = dataStart(header);
+		checkRange(start, size);
+		ByteBuffer view = content.duplicate();
+		view.position(start);
+		view.limit(start + size);
+		return view.slice();
+	}
+
+	private int dataStart(int header) throws ZipException {
+		int local = unsignedInt(content, header + HEADER_LOCAL_OFFSET);
+		checkSignature(local, LOCAL_SIGNATURE, LOCAL_LENGTH);
+		return local + LOCAL_LENGTH
+			+ unsignedShort(content, local + LOCAL_NAME_LENGTH_OFFSET)
+			+ unsignedShort(content, local + LOCAL_EXTRA_LENGTH_OFFSET);
+	}
+
+	private byte[] copy(int start, int length) throws ZipException {
+		checkRange(start, length);
+		byte[] result = new byte[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = content.get(start + i);
+		}
+		return result;
+	}
+
+	private void checkSignature(int position, int expected, int length) throws ZipException {
+		checkRange(position, length);
+		if (content.getInt(position) != expected) {
+			throw new ZipException("Unexpected signature at position " + position);
+		}
+	}
+
+	private void checkRange(int start, int length) throws ZipException {
+		if (start < 0 || start > content.limit() - length) {
+			throw new ZipException("Malformed archive at position " + start);
+		}
+	}
+
+	private static byte[] inflate(byte[] compressed, int size) throws ZipException {
+		Inflater inflater = new Inflater(/* nowrap= */true);
+		try {
+			inflater.setInput(compressed);
+			byte[] result = new byte[size];
+			int inflated = inflater.inflate(result);
+			if (inflated != size) {
+				throw new ZipException("Inflated entry has unexpected size");
+			}
+			return result;
+		}
+		catch (DataFormatException e) {
+			ZipException zipException = new ZipException("Malformed deflated entry");
+			zipException.initCause(e);
+			throw zipException;
+		}
+		finally {
+			inflater.end();
+		}
+	}
+
+	private static int findEnd(ByteBuffer content) throws ZipException {
+		int lastCandidate = content.limit() - END_LENGTH;
+		int firstCandidate = Math.max(0, lastCandidate - MAXIMAL_COMMENT_LENGTH);
+		for (int candidate = lastCandidate; candidate >= firstCandidate; candidate--) {
+			if (content.getInt(candidate) == END_SIGNATURE
+				&& candidate + END_LENGTH + unsignedShort(content, candidate + END_COMMENT_LENGTH_OFFSET)
+					== content.limit()) {
+				return candidate;
+			}
+		}
+		throw new ZipException("End of central directory not found");
+	}
+
+	private static int unsignedShort(ByteBuffer buffer, int position) {
+		return buffer.getShort(position) & SHORT_MASK;
+	}
+
+	private static int unsignedInt(ByteBuffer buffer, int position) throws ZipException {
+		long value = buffer.getInt(position) & INT_MASK;
+		if (value > Integer.MAX_VALUE) {
+			throw new ZipException("Unsupported archive size, probably ZIP64");
+		}
+		return (int) value;
+	}
+}
@@ -0,0 +1,92 @@
+package org.perfectable.introspection.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClassFileHeaderTest {
+
+	@Test
+	void subject() throws IOException {
+		ClassFileHeader header = readHeader(Subject.class);
+
+		assertThat(header.name()).isEqualTo(Subject.class.getName());
+		assertThat(header.superclassName()).hasValue(Object.class.getName());
+		assertThat(header.interfaceNames()).isEmpty();
+		assertThat(header.accessFlags() & Modifier.PUBLIC).isNotZero();
+		assertThat(header.annotationTypeNames())
+			.containsExactlyInAnyOrder(Subject.Special.class.getName(), Subject.OtherAnnotation.class.getName(),
+				Subject.RepetitionContainer.class.getName());
+		assertThat(header.memberAnnotationTypeNames())
+			.containsExactlyInAnyOrder(Deprecated.class.getName(), Subject.Special.class.getName(),
+				Subject.OtherAnnotation.class.getName());
+	}
+
+	@Test
+	void extension() throws IOException {
+		ClassFileHeader header = readHeader(Subject.Extension.class);
+
+		assertThat(header.name()).isEqualTo(Subject.Extension.class.getName());
+		assertThat(header.superclassName()).hasValue(Subject.class.getName());
+		assertThat(header.annotationTypeNames()).isEmpty();
+		assertThat(header.memberAnnotationTypeNames()).isEmpty();
+	}
+
+	@Test
+	void parameterAnnotations() throws IOException {
+		ClassFileHeader header = readHeader(ParameterAnnotated.class);
+
+		assertThat(header.annotationTypeNames()).isEmpty();
+		assertThat(header.memberAnnotationTypeNames()).containsExactly(Subject.Repetition.class.getName());
+	}
+
+	@Test
+	void annotationInterface() throws IOException {
+		ClassFileHeader header = readHeader(Subject.Special.class);
+
+		assertThat(header.interfaceNames()).containsExactly(Annotation.class.getName());
+		assertThat(header.accessFlags() & Modifier.INTERFACE).isNotZero();
+	}
+
+	@Test
+	void objectHasNoSuperclass() throws IOException {
+		ClassFileHeader header = readHeader(Object.class);
+
+		assertThat(header.superclassName()).isEmpty();
+	}
+
+	@Test
+	void notClassFile() {
+		InputStream stream = new ByteArrayInputStream("not a class".getBytes(StandardCharsets.UTF_8));
+
+		assertThatThrownBy(() -> ClassFileHeader.read(stream))
+			.isInstanceOf(IOException.class);
+	}
+
+	private static ClassFileHeader readHeader(Class<?> type) throws IOException {
+		String resourceName = type.getName().replace('.', '/') + ".class";
+		@Nullable InputStream resource = ClassLoader.getSystemResourceAsStream(resourceName);
+		if (resource == null) {
+			throw new AssertionError("Missing class file " + resourceName);
+		}
+		try (InputStream stream = resource) {
+			return ClassFileHeader.read(stream);
+		}
+	}
+
+	@SuppressWarnings("unused")
+	private static final class ParameterAnnotated {
+		void method(String first, @Subject.Repetition(1) String second) {
+			// only signature is tested
+		}
+	}
+}
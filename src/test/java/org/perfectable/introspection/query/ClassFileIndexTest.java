@@ -0,0 +1,51 @@
+package org.perfectable.introspection.query;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassFileIndexTest {
+	private static final int ADDED_HEADER_COUNT = ClassFileIndex.MAXIMUM_HEADER_COUNT * 2;
+
+	@Test
+	void bounded() {
+		ClassFileIndex index = ClassFileIndex.create();
+
+		for (int i = 0; i < ADDED_HEADER_COUNT; i++) {
+			index.add(header(i));
+		}
+
+		int storedCount = 0;
+		for (int i = 0; i < ADDED_HEADER_COUNT; i++) {
+			if (index.header(className(i)).isPresent()) {
+				storedCount++;
+			}
+		}
+		assertThat(storedCount)
+			.isPositive()
+			.isLessThanOrEqualTo(ClassFileIndex.MAXIMUM_HEADER_COUNT);
+		assertThat(index.header(className(0))).isEmpty();
+		assertThat(index.header(className(ADDED_HEADER_COUNT - 1))).isPresent();
+	}
+
+	@Test
+	void evict() {
+		ClassFileIndex index = ClassFileIndex.create();
+		index.add(header(0));
+
+		index.evict(className(0));
+
+		assertThat(index.header(className(0))).isEmpty();
+	}
+
+	private static ClassFileHeader header(int number) {
+		return ClassFileHeader.of(0, className(number), Object.class.getName(),
+			ImmutableList.of(), ImmutableSet.of(), ImmutableSet.of());
+	}
+
+	private static String className(int number) {
+		return "org.example.Generated" + number;
+	}
+}
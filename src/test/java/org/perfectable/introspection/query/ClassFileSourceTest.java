@@ -0,0 +1,25 @@
+package org.perfectable.introspection.query;
+
+import java.lang.reflect.AnnotatedElement;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassFileSourceTest {
+	private static final String SUBJECT_NAME = Subject.class.getName();
+
+	@Test
+	void parsedClassesDetached() {
+		ClassFileSource classFiles = ClassFileSource.of(ClassFileSourceTest.class.getClassLoader());
+		ClassFileHeader header = classFiles.header(SUBJECT_NAME)
+			.orElseThrow(() -> new AssertionError("Missing class file of " + SUBJECT_NAME));
+
+		AnnotatedElement annotations = classFiles.annotations(header);
+
+		assertThat(annotations.getAnnotation(Subject.Special.class)).isNotNull();
+		assertThat(classFiles.isParsed(SUBJECT_NAME)).isFalse();
+		assertThat(annotations.getDeclaredAnnotations()).isNotEmpty();
+		assertThat(classFiles.isParsed(SUBJECT_NAME)).isFalse();
+	}
+}
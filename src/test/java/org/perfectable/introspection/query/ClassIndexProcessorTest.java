@@ -0,0 +1,147 @@
+package org.perfectable.introspection.query;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import com.google.common.collect.ImmutableList;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassIndexProcessorTest {
+	private static final String SOURCE = "package org.example;\n"
+		+ "@Deprecated\n"
+		+ "public class Example extends java.util.AbstractList<String> implements Runnable {\n"
+		+ "	@Deprecated public String get(int index) { return null; }\n"
+		+ "	public int size() { return 0; }\n"
+		+ "	public void run() { }\n"
+		+ "	interface Nested { }\n"
+		+ "}\n";
+	private static final String KINDS_SOURCE = "package org.example;\n"
+		+ "public class Kinds {\n"
+		+ "	public enum Plain { FIRST }\n"
+		+ "	enum WithBody { FIRST { }, SECOND }\n"
+		+ "	protected enum AbstractBody { FIRST { void act() { } }; abstract void act(); }\n"
+		+ "	private enum InterfaceBody implements Runnable { FIRST { public void run() { } } }\n"
+		+ "	@interface Marker { }\n"
+		+ "	public static abstract class Base { }\n"
+		+ "	protected static final class Leaf { }\n"
+		+ "	private class Inner { }\n"
+		+ "}\n";
+
+	@Test
+	void enabled(@TempDir Path temporaryDirectory) throws IOException {
+		Path output = compile(temporaryDirectory, "-A" + ClassIndexProcessor.ENABLED_OPTION);
+
+		ImmutableList<ClassFileHeader> headers = readIndex(output);
+
+		assertThat(headers).hasSize(2);
+		ClassFileHeader example = headers.get(0);
+		assertThat(example.name()).isEqualTo("org.example.Example");
+		assertThat(example.superclassName()).hasValue("java.util.AbstractList");
+		assertThat(example.interfaceNames()).containsExactly(Runnable.class.getName());
+		assertThat(example.annotationTypeNames()).containsExactly(Deprecated.class.getName());
+		assertThat(example.memberAnnotationTypeNames()).containsExactly(Deprecated.class.getName());
+		assertThat(example.accessFlags() & Modifier.PUBLIC).isNotZero();
+		ClassFileHeader nested = headers.get(1);
+		assertThat(nested.name()).isEqualTo("org.example.Example$Nested");
+		assertThat(nested.superclassName()).hasValue(Object.class.getName());
+		assertThat(nested.accessFlags() & Modifier.INTERFACE).isNotZero();
+		assertThat(nested.memberAnnotationTypeNames()).isEmpty();
+	}
+
+	@Test
+	void accessFlagsOfClassFiles(@TempDir Path temporaryDirectory) throws IOException {
+		Path output =
+			compileSource(temporaryDirectory, "Kinds", KINDS_SOURCE, "-A" + ClassIndexProcessor.ENABLED_OPTION);
+
+		ImmutableList<ClassFileHeader> headers = readIndex(output);
+
+		assertThat(headers).hasSize(9);
+		for (ClassFileHeader indexed : headers) {
+			Path classFile = output.resolve(indexed.name().replace('.', '/') + ".class");
+			try (InputStream stream = Files.newInputStream(classFile)) {
+				assertThat(indexed.accessFlags())
+					.describedAs(indexed.name())
+					.isEqualTo(ClassFileHeader.read(stream).accessFlags());
+			}
+		}
+	}
+
+	@Test
+	void disabled(@TempDir Path temporaryDirectory) throws IOException {
+		Path output = compile(temporaryDirectory);
+
+		assertThat(output.resolve(BuildTimeIndex.RESOURCE_NAME)).doesNotExist();
+	}
+
+	@Test
+	void archiveListing(@TempDir Path temporaryDirectory) throws IOException {
+		Path output = compile(temporaryDirectory, "-A" + ClassIndexProcessor.ENABLED_OPTION);
+		Path archive = temporaryDirectory.resolve("indexed.jar");
+		try (OutputStream fileStream = Files.newOutputStream(archive);
+			 JarOutputStream jarStream = new JarOutputStream(fileStream)) {
+			jarStream.putNextEntry(new ZipEntry(BuildTimeIndex.RESOURCE_NAME));
+			Files.copy(output.resolve(BuildTimeIndex.RESOURCE_NAME), jarStream);
+			jarStream.closeEntry();
+			jarStream.putNextEntry(new ZipEntry("org/example/NotIndexed.class"));
+			jarStream.closeEntry();
+		}
+
+		ElementListing listing = ElementListing.ofArchive(archive);
+
+		assertThat(listing.entries())
+			.containsExactly(BuildTimeIndex.RESOURCE_NAME, "org/example/NotIndexed.class");
+	}
+
+	private static Path compile(Path temporaryDirectory, String... options) throws IOException {
+		return compileSource(temporaryDirectory, "Example", SOURCE, options);
+	}
+
+	private static Path compileSource(Path temporaryDirectory, String className, String sourceCode,
+									  String... options) throws IOException {
+		@Nullable JavaCompiler systemCompiler = ToolProvider.getSystemJavaCompiler();
+		Assumptions.assumeTrue(systemCompiler != null);
+		@SuppressWarnings("nullness:cast.unsafe")
+		JavaCompiler compiler = (@NonNull JavaCompiler) systemCompiler;
+		Path source = temporaryDirectory.resolve(className + ".java");
+		Files.write(source, sourceCode.getBytes(StandardCharsets.UTF_8));
+		Path output = Files.createDirectory(temporaryDirectory.resolve("classes"));
+		List<String> arguments = ImmutableList.<String>builder()
+			.add("-d", output.toString())
+			.addAll(Arrays.asList(options))
+			.build();
+		try (StandardJavaFileManager fileManager =
+				 compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+			Iterable<? extends JavaFileObject> sources = fileManager.getJavaFileObjects(source.toFile());
+			JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, arguments, null, sources);
+			task.setProcessors(Collections.singletonList(new ClassIndexProcessor()));
+			assertThat(task.call()).isTrue();
+		}
+		return output;
+	}
+
+	private static ImmutableList<ClassFileHeader> readIndex(Path output) throws IOException {
+		try (InputStream stream = Files.newInputStream(output.resolve(BuildTimeIndex.RESOURCE_NAME))) {
+			return BuildTimeIndex.read(stream);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package org.perfectable.introspection.query;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassKindTest {
+
+	@Test
+	void kinds() throws IOException {
+		assertThat(kindOf(Subject.class)).isEqualTo(ClassKind.CLASS);
+		assertThat(kindOf(AbstractQuery.class)).isEqualTo(ClassKind.CLASS);
+		assertThat(kindOf(Subject.NestedInterface.class)).isEqualTo(ClassKind.INTERFACE);
+		assertThat(kindOf(Subject.Special.class)).isEqualTo(ClassKind.ANNOTATION);
+		assertThat(kindOf(ClassKind.class)).isEqualTo(ClassKind.ENUM);
+	}
+
+	@Test
+	void enumConstantBody() throws IOException {
+		Class<?> bodyClass = ConstantWithBody.FIRST.getClass();
+
+		assertThat(bodyClass).isNotEqualTo(ConstantWithBody.class);
+		assertThat(kindOf(ConstantWithBody.class)).isEqualTo(ClassKind.ENUM);
+		assertThat(kindOf(bodyClass)).isEqualTo(ClassKind.CLASS);
+	}
+
+	private static ClassKind kindOf(Class<?> type) throws IOException {
+		String resourceName = type.getName().replace('.', '/') + ".class";
+		@Nullable InputStream resource = ClassLoader.getSystemResourceAsStream(resourceName);
+		if (resource == null) {
+			throw new AssertionError("Missing class file " + resourceName);
+		}
+		try (InputStream stream = resource) {
+			return ClassKind.of(ClassFileHeader.read(stream));
+		}
+	}
+
+	private enum ConstantWithBody {
+		FIRST {
+			@Override
+			String label() {
+				return "first";
+			}
+		};
+
+		abstract String label();
+	}
+}
@@ -0,0 +1,50 @@
+package org.perfectable.introspection.query;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassPathResourceSourceTest {
+	@Test
+	void plainEntry(@TempDir Path temporaryDirectory) {
+		Path jar = temporaryDirectory.resolve("library.jar");
+
+		List<Path> paths = generate(jar.toString());
+
+		assertThat(paths).containsExactly(jar);
+	}
+
+	@Test
+	void wildcardEntry(@TempDir Path temporaryDirectory) throws IOException {
+		Path lowercaseJar = Files.createFile(temporaryDirectory.resolve("first.jar"));
+		Path uppercaseJar = Files.createFile(temporaryDirectory.resolve("second.JAR"));
+		Files.createFile(temporaryDirectory.resolve("notes.txt"));
+		Files.createDirectory(temporaryDirectory.resolve("directory.jar"));
+		Path nested = Files.createDirectory(temporaryDirectory.resolve("nested"));
+		Files.createFile(nested.resolve("nested.jar"));
+
+		List<Path> paths = generate(temporaryDirectory + "/*");
+
+		assertThat(paths).containsExactlyInAnyOrder(lowercaseJar, uppercaseJar);
+	}
+
+	@Test
+	void wildcardMissingDirectory(@TempDir Path temporaryDirectory) {
+		List<Path> paths = generate(temporaryDirectory.resolve("missing") + "/*");
+
+		assertThat(paths).isEmpty();
+	}
+
+	private static List<Path> generate(String entry) {
+		List<Path> result = new ArrayList<>();
+		ClassPathResourceSource.generateEntryPaths(entry, result::add);
+		return result;
+	}
+}
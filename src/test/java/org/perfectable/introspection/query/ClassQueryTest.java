@@ -1,8 +1,21 @@
 package org.perfectable.introspection.query;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.lang.reflect.Modifier;
+import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
 
 import javassist.CtClass;
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -10,11 +23,88 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.perfectable.introspection.query.AbstractQueryAssert.assertThat;
 
 class ClassQueryTest {
 	private static final String PACKAGE_NAME = "org.perfectable";
+	private static final int SCAN_PARALLELISM = 4;
+	private static final String BROKEN_PACKAGE_NAME = "broken";
+	private static final String BROKEN_CLASS_NAME = BROKEN_PACKAGE_NAME + ".Broken";
+
+	@Test
+	void loadFailures(@TempDir Path classpath) throws IOException {
+		Path packageDirectory = Files.createDirectory(classpath.resolve(BROKEN_PACKAGE_NAME));
+		Files.write(packageDirectory.resolve("Broken.class"), new byte[] {1, 2, 3});
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {classpath.toUri().toURL()}, null)) {
+			ClassQuery<Object> query = ClassQuery.of(loader)
+				.inPackage(BROKEN_PACKAGE_NAME);
+
+			assertThat(query.stream()).isEmpty();
+			assertThat(query.loadFailures())
+				.containsOnlyKeys(BROKEN_CLASS_NAME);
+			assertThat(query.loadFailures().get(BROKEN_CLASS_NAME))
+				.startsWith(ClassFormatError.class.getName());
+			assertThat(query.stream()).isEmpty();
+		}
+	}
+
+	@Test
+	void loadFailuresCleared(@TempDir Path classpath) throws IOException {
+		Path packageDirectory = Files.createDirectory(classpath.resolve(BROKEN_PACKAGE_NAME));
+		Files.write(packageDirectory.resolve("Broken.class"), new byte[] {1, 2, 3});
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {classpath.toUri().toURL()}, null)) {
+			ClassQuery<Object> query = ClassQuery.of(loader)
+				.inPackage(BROKEN_PACKAGE_NAME);
+			assertThat(query.stream()).isEmpty();
+
+			ClassQuery.of(loader).clearLoadFailures();
+
+			assertThat(query.loadFailures()).isEmpty();
+		}
+	}
+
+	@Test
+	void loadFailuresSharedByLoader(@TempDir Path classpath) throws IOException {
+		// subclass without its superclass has readable class file, but cannot be loaded
+		String classFileName = Subject.Extension.class.getName().replace('.', '/') + ".class";
+		Path classFile = classpath.resolve(classFileName);
+		Files.createDirectories(classFile.getParent());
+		try (InputStream source = ClassLoader.getSystemResourceAsStream(classFileName)) {
+			Files.copy(requireNonNull(source), classFile);
+		}
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {classpath.toUri().toURL()}, null)) {
+			ClassDescriptor<Object> descriptor = ClassQuery.of(loader)
+				.descriptors()
+				.unique();
+
+			assertThatThrownBy(descriptor::load)
+				.isInstanceOf(ClassNotFoundException.class)
+				.hasCauseInstanceOf(NoClassDefFoundError.class);
+			assertThat(ClassQuery.of(loader).loadFailures())
+				.containsOnlyKeys(Subject.Extension.class.getName());
+			assertThat(ClassQuery.of(loader).stream()).isEmpty();
+			assertThatThrownBy(descriptor::load)
+				.isInstanceOf(ClassNotFoundException.class)
+				.hasMessageContaining(NoClassDefFoundError.class.getName());
+		}
+	}
+
+	@Test
+	void modules() {
+		Assumptions.assumeTrue(ModuleResourceSource.runtimeImage().isPresent());
+		ClassQuery<Object> query = ClassQuery.modules()
+			.inPackage("java.util.concurrent")
+			.subtypeOf(Map.class);
+
+		assertThat(query)
+			.contains(ConcurrentHashMap.class, ConcurrentSkipListMap.class)
+			.doesNotContain(HashMap.class, ClassQuery.class, Subject.class);
+	}
 
 	abstract static class Methods {
 		private static final String EXAMPLE_STRING = "testString";
@@ -49,6 +139,97 @@ class ClassQueryTest {
 					ClassQueryTest.class, ClassQuery.class, SubjectReflection.class, EXAMPLE_STRING);
 		}
 
+		@Test
+		void annotatedWithRepeated() {
+			ClassQuery<Object> root = createQuery()
+				.inPackage(PACKAGE_NAME);
+			ClassQuery<Object> special = root
+				.annotatedWith(Subject.Special.class);
+			ClassQuery<Object> other = root
+				.annotatedWith(AnnotationFilter.single(Subject.OtherAnnotation.class));
+
+			assertThat(special)
+				.isSingleton(Subject.class);
+			assertThat(other)
+				.isSingleton(Subject.class);
+			assertThat(special)
+				.isSingleton(Subject.class);
+		}
+
+		@Test
+		void withMemberAnnotatedWith() {
+			ClassQuery<Object> query = createQuery()
+				.inPackage(PACKAGE_NAME)
+				.withMemberAnnotatedWith(Subject.OtherAnnotation.class);
+
+			assertThat(query)
+				.isSingleton(Subject.class)
+				.doesNotContain(Subject.Extension.class, AnnotationFilter.class, ClassQueryTest.class,
+					ClassQuery.class, SubjectReflection.class, EXAMPLE_STRING);
+		}
+
+		@Test
+		void excludingModifier() {
+			ClassQuery<Object> query = createQuery()
+				.inPackage(PACKAGE_NAME)
+				.excludingModifier(Modifier.ABSTRACT);
+
+			assertThat(query)
+				.contains(ClassQuery.class, Subject.class, Subject.Extension.class)
+				.doesNotContain(AbstractQuery.class, MemberQuery.class, AnnotationFilter.class,
+					Subject.Special.class, Subject.NestedInterface.class);
+		}
+
+		@Test
+		void requiringModifier() {
+			ClassQuery<Object> query = createQuery()
+				.inPackage(PACKAGE_NAME)
+				.requiringModifier(Modifier.INTERFACE);
+
+			assertThat(query)
+				.contains(AnnotationFilter.class, ScanListener.class, Subject.Special.class)
+				.doesNotContain(ClassQuery.class, AbstractQuery.class, Subject.class);
+		}
+
+		@Test
+		void requiringCombinedModifiers() {
+			ClassQuery<Object> query = createQuery()
+				.inPackage(PACKAGE_NAME)
+				.requiringModifier(Modifier.PUBLIC | Modifier.ABSTRACT);
+
+			assertThat(query)
+				.contains(AnnotationFilter.class, ScanListener.class)
+				.doesNotContain(ClassQuery.class, AbstractQuery.class, Subject.class);
+		}
+
+		@Test
+		void excludingCombinedModifiers() {
+			ClassQuery<Object> query = createQuery()
+				.inPackage(PACKAGE_NAME)
+				.excludingModifier(Modifier.PUBLIC | Modifier.FINAL);
+
+			assertThat(query)
+				.contains(AbstractQuery.class, MemberQuery.class)
+				.doesNotContain(ClassQuery.class, TypeHierarchy.class, Subject.class, AnnotationFilter.class);
+		}
+
+		@Test
+		void ofKind() {
+			ClassQuery<Object> annotations = createQuery()
+				.inPackage(PACKAGE_NAME)
+				.ofKind(ClassKind.ANNOTATION);
+			ClassQuery<Object> enums = createQuery()
+				.inPackage(PACKAGE_NAME)
+				.ofKind(ClassKind.ENUM);
+
+			assertThat(annotations)
+				.contains(Subject.Special.class, Subject.OtherAnnotation.class)
+				.doesNotContain(Subject.class, AnnotationFilter.class, ClassKind.class);
+			assertThat(enums)
+				.contains(ClassKind.class)
+				.doesNotContain(Subject.class, Subject.Special.class, ScanListener.class);
+		}
+
 		@Test
 		void subtypeOf() {
 			ClassQuery<Object> query = createQuery()
@@ -61,6 +242,37 @@ class ClassQueryTest {
 					ClassQueryTest.class, Subject.class, SubjectReflection.class, EXAMPLE_STRING);
 		}
 
+		@Test
+		void subtypeOfInheritedInterface() {
+			ClassQuery<Object> query = createQuery()
+				.inPackage(PACKAGE_NAME)
+				.subtypeOf(Iterable.class);
+
+			assertThat(query)
+				.sortsCorrectlyWith(Comparator.comparing(Class::toString))
+				.contains(ClassQuery.class, MethodQuery.class, ConstructorQuery.class)
+				.doesNotContain(Serializable.class, AnnotationFilter.class, String.class, CtClass.class,
+					ClassQueryTest.class, Subject.class, SubjectReflection.class, EXAMPLE_STRING);
+		}
+
+		@Test
+		void subtypeOfTerminatedEarly() {
+			List<ScanStatistics> reported = new ArrayList<>();
+			ClassQuery<Object> query = createQuery()
+				.inPackage(PACKAGE_NAME)
+				.subtypeOf(Object.class)
+				.reportingTo(reported::add);
+
+			try (Stream<Class<?>> classes = query.stream()) {
+				assertThat(classes.findFirst()).isPresent();
+			}
+			assertThat(query.stream().count()).isGreaterThan(1);
+
+			assertThat(reported).hasSize(2);
+			assertThat(reported.get(0).classesFound())
+				.isLessThan(reported.get(1).classesFound());
+		}
+
 		@Test
 		void filter() {
 			ClassQuery<Object> query = createQuery()
@@ -73,6 +285,147 @@ class ClassQueryTest {
 					ClassQuery.class, Subject.class, SubjectReflection.class, EXAMPLE_STRING);
 		}
 
+		@Test
+		void indexedIn(@TempDir Path indexDirectory) throws IOException {
+			ClassQuery<Object> query = createQuery()
+				.indexedIn(indexDirectory)
+				.annotatedWith(Subject.Special.class);
+
+			assertThat(query)
+				.isSingleton(Subject.class);
+			try (Stream<Path> indexFiles = Files.list(indexDirectory)) {
+				assertThat(indexFiles).isNotEmpty();
+			}
+			assertThat(query)
+				.isSingleton(Subject.class);
+		}
+
+		@Test
+		void watchingDirectories() {
+			ClassQuery<Object> plain = createQuery()
+				.inPackage(PACKAGE_NAME);
+			ClassQuery<Object> watching = plain
+				.watchingDirectories();
+
+			assertThat(watching.stream())
+				.containsExactlyElementsOf(plain);
+			assertThat(watching)
+				.contains(ClassQuery.class, Subject.class);
+		}
+
+		@Test
+		void scannedInParallel() {
+			ClassQuery<Object> sequential = createQuery()
+				.inPackage(PACKAGE_NAME);
+			ClassQuery<Object> parallel = sequential
+				.scannedInParallel(SCAN_PARALLELISM);
+
+			assertThat(parallel.stream())
+				.containsExactlyElementsOf(sequential);
+		}
+
+		@Test
+		void loadedInParallel() {
+			ClassQuery<Object> sequential = createQuery()
+				.inPackage(PACKAGE_NAME);
+			ClassQuery<Object> parallel = sequential
+				.loadedInParallel(SCAN_PARALLELISM);
+
+			assertThat(parallel.stream())
+				.containsExactlyElementsOf(sequential);
+			assertThat(parallel)
+				.contains(ClassQuery.class, Subject.class);
+		}
+
+		@Test
+		void reportingTo() {
+			List<ScanStatistics> reported = new ArrayList<>();
+			ClassQuery<Object> query = createQuery()
+				.inPackage(PACKAGE_NAME)
+				.annotatedWith(Subject.Special.class)
+				.reportingTo(reported::add);
+
+			assertThat(query.stream())
+				.containsExactly(Subject.class);
+
+			assertThat(reported).hasSize(1);
+			ScanStatistics statistics = reported.get(0);
+			assertThat(statistics.classesFound()).isGreaterThan(1);
+			assertThat(statistics.classesPassingNameFilter()).isEqualTo(statistics.classesFound());
+			assertThat(statistics.classesPassingPreLoadFilter()).isEqualTo(1);
+			assertThat(statistics.classesLoaded()).isEqualTo(1);
+			assertThat(statistics.classesPassingPostLoadFilter()).isEqualTo(1);
+			assertThat(statistics.elements())
+				.filteredOn(element -> element.classesLoaded() > 0)
+				.hasSize(1)
+				.allSatisfy(element -> assertThat(element.entryCount()).isPositive());
+		}
+
+		@Test
+		void descriptors() throws ClassNotFoundException {
+			ClassDescriptorQuery<Object> query = createQuery()
+				.inPackage(PACKAGE_NAME)
+				.annotatedWith(Subject.Special.class)
+				.descriptors();
+
+			ClassDescriptor<Object> descriptor = query.unique();
+
+			assertThat(descriptor.name()).isEqualTo(Subject.class.getName());
+			assertThat(descriptor.superclassName()).hasValue(Object.class.getName());
+			assertThat(descriptor.annotationTypeNames())
+				.contains(Subject.Special.class.getName(), Subject.OtherAnnotation.class.getName());
+			assertThat(descriptor.kind()).isEqualTo(ClassKind.CLASS);
+			assertThat(descriptor.memberAnnotationTypeNames())
+				.contains(Subject.Special.class.getName(), Subject.OtherAnnotation.class.getName());
+			assertThat(descriptor.annotation(Subject.Special.class)).isPresent();
+			assertThat(descriptor.annotation(Deprecated.class)).isEmpty();
+			assertThat(descriptor.load()).isEqualTo(Subject.class);
+		}
+
+		@Test
+		void descriptorsFiltered() {
+			ClassDescriptorQuery<Object> query = createQuery()
+				.inPackage(PACKAGE_NAME)
+				.descriptors()
+				.filter(descriptor -> descriptor.name().endsWith("Query"));
+
+			assertThat(query.stream().map(ClassDescriptor::name))
+				.contains(ClassQuery.class.getName(), ClassDescriptorQuery.class.getName())
+				.doesNotContain(Subject.class.getName(), ClassQueryTest.class.getName());
+		}
+
+		@Test
+		void descriptorsContains() {
+			ClassQuery<Object> root = createQuery()
+				.inPackage(PACKAGE_NAME);
+			ClassDescriptor<Object> subject = root
+				.annotatedWith(Subject.Special.class)
+				.descriptors()
+				.unique();
+			ClassDescriptorQuery<Object> all = root.descriptors();
+
+			assertThat(root.descriptors().contains(subject)).isTrue();
+			assertThat(root.subtypeOf(AbstractQuery.class).descriptors().contains(subject)).isFalse();
+			assertThat(root.notInPackage(Subject.class.getPackage()).descriptors().contains(subject)).isFalse();
+			assertThat(all.filter(descriptor -> descriptor.name().endsWith("Query")).contains(subject)).isFalse();
+			assertThat(all.contains(Subject.class)).isFalse();
+			ClassDescriptor<Object> listed = all.stream()
+				.filter(descriptor -> descriptor.name().equals(Subject.class.getName()))
+				.findFirst()
+				.orElseThrow(AssertionError::new);
+			assertThat(listed).isNotSameAs(subject).isEqualTo(subject);
+			assertThat(listed.hashCode()).isEqualTo(subject.hashCode());
+		}
+
+		@Test
+		void descriptorsAfterFilter() {
+			ClassQuery<Object> query = createQuery()
+				.filter(Class::isInterface);
+
+			assertThatThrownBy(query::descriptors)
+				.isInstanceOf(IllegalStateException.class);
+		}
+
 	}
 
 	@SuppressWarnings("ClassCanBeStatic")
@@ -0,0 +1,76 @@
+package org.perfectable.introspection.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactPathSetTest {
+	private static final int LARGE_PACKAGE_COUNT = 7;
+	private static final int LARGE_CLASS_COUNT = 300;
+
+	@Test
+	void empty() {
+		CompactPathSet set = CompactPathSet.of(ImmutableList.of());
+
+		assertThat(set.size()).isZero();
+		assertThat(set).isEmpty();
+		assertThat(set.contains("org/example/Missing.class")).isFalse();
+		assertThat(set.withPrefix("org/")).isEmpty();
+	}
+
+	@Test
+	void sortedAndDeduplicated() {
+		CompactPathSet set = CompactPathSet.of(ImmutableList.of("org/example/b/B.class", "org/example/A.class",
+			"META-INF/MANIFEST.MF", "org/example/A.class", "org/example/\u00c4.class"));
+
+		assertThat(set.size()).isEqualTo(4);
+		assertThat(set).containsExactly("META-INF/MANIFEST.MF", "org/example/A.class", "org/example/b/B.class",
+			"org/example/\u00c4.class");
+	}
+
+	@Test
+	void contains() {
+		List<String> paths = largePaths();
+		CompactPathSet set = CompactPathSet.of(paths);
+
+		assertThat(set.size()).isEqualTo(paths.size());
+		for (String path : paths) {
+			assertThat(set.contains(path)).isTrue();
+		}
+		assertThat(set.contains("org/example/p3/")).isFalse();
+		assertThat(set.contains("org/example/p3/Type1.clas")).isFalse();
+		assertThat(set.contains("org/example/p3/Type1.class.bak")).isFalse();
+		assertThat(set.contains("a.class")).isFalse();
+		assertThat(set.contains("z.class")).isFalse();
+	}
+
+	@Test
+	void withPrefix() {
+		CompactPathSet set = CompactPathSet.of(largePaths());
+
+		assertThat(set.withPrefix("org/example/p3/"))
+			.hasSize(LARGE_CLASS_COUNT)
+			.allSatisfy(path -> assertThat(path).startsWith("org/example/p3/"));
+		assertThat(set.withPrefix("org/example/p3/Type29"))
+			.containsExactly("org/example/p3/Type29.class", "org/example/p3/Type290.class",
+				"org/example/p3/Type291.class", "org/example/p3/Type292.class", "org/example/p3/Type293.class",
+				"org/example/p3/Type294.class", "org/example/p3/Type295.class", "org/example/p3/Type296.class",
+				"org/example/p3/Type297.class", "org/example/p3/Type298.class", "org/example/p3/Type299.class");
+		assertThat(set.withPrefix("org/other/")).isEmpty();
+		assertThat(set.withPrefix("")).hasSize(LARGE_PACKAGE_COUNT * LARGE_CLASS_COUNT);
+	}
+
+	private static List<String> largePaths() {
+		List<String> result = new ArrayList<>();
+		for (int packageIndex = 0; packageIndex < LARGE_PACKAGE_COUNT; packageIndex++) {
+			for (int classIndex = 0; classIndex < LARGE_CLASS_COUNT; classIndex++) {
+				result.add("org/example/p" + packageIndex + "/Type" + classIndex + ".class");
+			}
+		}
+		return result;
+	}
+}
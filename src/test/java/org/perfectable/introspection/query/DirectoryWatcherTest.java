@@ -0,0 +1,129 @@
+package org.perfectable.introspection.query;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectoryWatcherTest {
+	private static final String PACKAGE_PATH = "org/example";
+	private static final String PRESENT_ENTRY = "org/example/Present.class";
+	private static final String ADDED_ENTRY = "org/example/Added.class";
+	private static final String NESTED_ENTRY = "org/example/nested/Nested.class";
+	private static final String MOVED_ENTRY = "org/moved/Nested.class";
+	private static final String MOVED_ADDED_ENTRY = "org/moved/Added.class";
+
+	private static final long NOTIFICATION_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+	private static final long NOTIFICATION_POLL_MILLIS = 20;
+
+	private final DirectoryWatcher.Registration registration = DirectoryWatcher.INSTANCE.register();
+
+	@Test
+	void unchanged(@TempDir Path directory) throws IOException {
+		createFile(directory, PRESENT_ENTRY);
+
+		ElementListing first = registration.listing(directory);
+		ElementListing second = registration.listing(directory);
+
+		assertThat(first.entries()).containsExactly(PRESENT_ENTRY);
+		assertThat(second).isSameAs(first);
+	}
+
+	@Test
+	void changes(@TempDir Path directory) throws IOException, InterruptedException {
+		createFile(directory, PRESENT_ENTRY);
+		assertThat(registration.listing(directory).entries()).containsExactly(PRESENT_ENTRY);
+
+		createFile(directory, ADDED_ENTRY);
+		assertThat(awaitListing(directory, entries -> entries.contains(ADDED_ENTRY)))
+			.containsExactlyInAnyOrder(PRESENT_ENTRY, ADDED_ENTRY);
+
+		Files.delete(directory.resolve(PRESENT_ENTRY));
+		assertThat(awaitListing(directory, entries -> !entries.contains(PRESENT_ENTRY)))
+			.containsExactly(ADDED_ENTRY);
+
+		createFile(directory, NESTED_ENTRY);
+		assertThat(awaitListing(directory, entries -> entries.contains(NESTED_ENTRY)))
+			.containsExactlyInAnyOrder(ADDED_ENTRY, NESTED_ENTRY);
+	}
+
+	@Test
+	void movedDirectory(@TempDir Path directory) throws IOException, InterruptedException {
+		createFile(directory, NESTED_ENTRY);
+		assertThat(registration.listing(directory).entries()).containsExactly(NESTED_ENTRY);
+
+		Files.move(directory.resolve(PACKAGE_PATH).resolve("nested"), directory.resolve("org/moved"));
+		assertThat(awaitListing(directory, entries -> entries.contains(MOVED_ENTRY)))
+			.containsExactly(MOVED_ENTRY);
+
+		createFile(directory, MOVED_ADDED_ENTRY);
+		assertThat(awaitListing(directory, entries -> entries.contains(MOVED_ADDED_ENTRY)))
+			.containsExactlyInAnyOrder(MOVED_ENTRY, MOVED_ADDED_ENTRY);
+	}
+
+	@Test
+	void released(@TempDir Path directory) throws IOException, InterruptedException {
+		createFile(directory, PRESENT_ENTRY);
+		listAndForget(directory);
+		assertThat(DirectoryWatcher.INSTANCE.isWatching(directory)).isTrue();
+
+		long deadline = System.currentTimeMillis() + NOTIFICATION_TIMEOUT_MILLIS;
+		while (DirectoryWatcher.INSTANCE.isWatching(directory) && System.currentTimeMillis() < deadline) {
+			System.gc();
+			Thread.sleep(NOTIFICATION_POLL_MILLIS);
+		}
+		assertThat(DirectoryWatcher.INSTANCE.isWatching(directory)).isFalse();
+	}
+
+	@Test
+	void changedHeaderEvicted(@TempDir Path directory) throws IOException, InterruptedException {
+		String classFileName = Subject.class.getName().replace('.', '/') + ".class";
+		try (InputStream source = ClassLoader.getSystemResourceAsStream(classFileName)) {
+			Files.createDirectories(directory.resolve(classFileName).getParent());
+			Files.copy(requireNonNull(source), directory.resolve(classFileName));
+		}
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {directory.toUri().toURL()}, null)) {
+			assertThat(registration.listing(directory).entries()).containsExactly(classFileName);
+			assertThat(ClassFileSource.of(loader).header(Subject.class.getName())).isPresent();
+
+			Files.delete(directory.resolve(classFileName));
+			assertThat(awaitListing(directory, entries -> !entries.contains(classFileName))).isEmpty();
+
+			assertThat(ClassFileSource.of(loader).header(Subject.class.getName())).isEmpty();
+		}
+	}
+
+	private static void listAndForget(Path directory) {
+		DirectoryWatcher.Registration temporary = DirectoryWatcher.INSTANCE.register();
+		assertThat(temporary.listing(directory).entries()).containsExactly(PRESENT_ENTRY);
+	}
+
+	private static void createFile(Path directory, String entry) throws IOException {
+		Files.createDirectories(directory.resolve(entry.substring(0, entry.lastIndexOf('/'))));
+		Files.createFile(directory.resolve(entry));
+	}
+
+	private List<String> awaitListing(Path directory, Predicate<List<String>> condition)
+			throws InterruptedException {
+		// notifications are delivered asynchronously, so change might not be visible in the first listing after it
+		long deadline = System.currentTimeMillis() + NOTIFICATION_TIMEOUT_MILLIS;
+		List<String> entries = ImmutableList.copyOf(registration.listing(directory).entries());
+		while (!condition.test(entries) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(NOTIFICATION_POLL_MILLIS);
+			entries = ImmutableList.copyOf(registration.listing(directory).entries());
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,65 @@
+package org.perfectable.introspection.query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntrySetTest {
+	private static final String PACKAGE_PATH = "org/example";
+	private static final String ARCHIVE_ENTRY = "org/example/Archived.class";
+	private static final String DIRECTORY_ENTRY = "org/example/Present.class";
+	private static final String ADDED_ENTRY = "org/example/Added.class";
+
+	@Test
+	void contains(@TempDir Path temporaryDirectory) throws IOException {
+		Path archive = createArchive(temporaryDirectory);
+		Path directory = createDirectory(temporaryDirectory);
+		ImmutableList<Path> roots = ImmutableList.of(archive, directory);
+
+		EntrySet entrySet = EntrySet.build(roots, ScanConfiguration.DEFAULT::list);
+
+		assertThat(entrySet.contains(ARCHIVE_ENTRY)).isTrue();
+		assertThat(entrySet.contains(DIRECTORY_ENTRY)).isTrue();
+		assertThat(entrySet.contains(ADDED_ENTRY)).isFalse();
+		assertThat(entrySet.isBuiltFor(roots)).isTrue();
+		assertThat(entrySet.isBuiltFor(ImmutableList.of(archive))).isFalse();
+	}
+
+	@Test
+	void directoryChanges(@TempDir Path temporaryDirectory) throws IOException {
+		Path directory = createDirectory(temporaryDirectory);
+		EntrySet entrySet = EntrySet.build(ImmutableList.of(directory), ScanConfiguration.DEFAULT::list);
+
+		Files.createFile(directory.resolve(ADDED_ENTRY));
+		Files.delete(directory.resolve(DIRECTORY_ENTRY));
+
+		assertThat(entrySet.contains(ADDED_ENTRY)).isTrue();
+		assertThat(entrySet.contains(DIRECTORY_ENTRY)).isFalse();
+	}
+
+	private static Path createArchive(Path temporaryDirectory) throws IOException {
+		Path archivePath = temporaryDirectory.resolve("archive.jar");
+		try (OutputStream fileStream = Files.newOutputStream(archivePath);
+			 JarOutputStream jarStream = new JarOutputStream(fileStream)) {
+			jarStream.putNextEntry(new ZipEntry(ARCHIVE_ENTRY));
+			jarStream.closeEntry();
+		}
+		return archivePath;
+	}
+
+	private static Path createDirectory(Path temporaryDirectory) throws IOException {
+		Path directory = temporaryDirectory.resolve("classes");
+		Files.createDirectories(directory.resolve(PACKAGE_PATH));
+		Files.createFile(directory.resolve(DIRECTORY_ENTRY));
+		return directory;
+	}
+}
@@ -0,0 +1,56 @@
+package org.perfectable.introspection.query;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntrySpliteratorTest {
+	private static final Path FIRST = Paths.get("/classpath/first.jar");
+	private static final Path LINKED = Paths.get("/classpath/linked.jar");
+	private static final Path SECOND = Paths.get("/classpath/second.jar");
+
+	private static final ImmutableMap<Path, ElementListing> LISTINGS = ImmutableMap.of(
+		FIRST, ElementListing.of(ImmutableList.of("a.class", "shared.class"), ImmutableList.of(LINKED.toString())),
+		LINKED, ElementListing.of(ImmutableList.of("linked.class", "shared.class"), ImmutableList.of()),
+		SECOND, ElementListing.of(ImmutableList.of("b.class"), ImmutableList.of(LINKED.toString())));
+
+	private final List<Path> listed = new ArrayList<>();
+
+	@Test
+	void orderAndDeduplication() {
+		Stream<String> entries = stream(FIRST, SECOND);
+
+		assertThat(entries)
+			.containsExactly("a.class", "shared.class", "linked.class", "b.class");
+		assertThat(listed)
+			.containsExactly(FIRST, LINKED, SECOND);
+	}
+
+	@Test
+	void shortCircuit() {
+		Stream<String> entries = stream(FIRST, SECOND);
+
+		assertThat(entries.findFirst())
+			.hasValue("a.class");
+		assertThat(listed)
+			.containsExactly(FIRST);
+	}
+
+	private Stream<String> stream(Path... roots) {
+		Function<Path, ElementListing> lister = element -> {
+			listed.add(element);
+			return LISTINGS.getOrDefault(element, ElementListing.of(ImmutableList.of(), ImmutableList.of()));
+		};
+		return StreamSupport.stream(EntrySpliterator.of(ImmutableList.copyOf(roots), lister), false);
+	}
+}
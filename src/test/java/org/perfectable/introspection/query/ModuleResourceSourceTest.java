@@ -0,0 +1,88 @@
+package org.perfectable.introspection.query;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModuleResourceSourceTest {
+	private static final String BASE_MODULE_PATH = "/modules/java.base";
+	private static final String SQL_MODULE_PATH = "/modules/java.sql";
+
+	@Test
+	void imageUnrestricted() {
+		FileSystem runtimeImage = requireRuntimeImage();
+
+		List<Path> paths = generateImage(runtimeImage, PathPrefixFilter.ALL);
+
+		assertThat(paths)
+			.contains(runtimeImage.getPath(BASE_MODULE_PATH), runtimeImage.getPath(SQL_MODULE_PATH));
+	}
+
+	@Test
+	void imageRestrictedToPackage() {
+		FileSystem runtimeImage = requireRuntimeImage();
+
+		List<Path> paths = generateImage(runtimeImage, PathPrefixFilter.ALL.and("java/sql/"));
+
+		assertThat(paths)
+			.containsExactly(runtimeImage.getPath(SQL_MODULE_PATH));
+	}
+
+	@Test
+	void imageRestrictedToClassNames() {
+		FileSystem runtimeImage = requireRuntimeImage();
+
+		List<Path> paths = generateImage(runtimeImage, PathPrefixFilter.ALL.and("java/lang/Str"));
+
+		assertThat(paths)
+			.contains(runtimeImage.getPath(BASE_MODULE_PATH))
+			.doesNotContain(runtimeImage.getPath(SQL_MODULE_PATH));
+	}
+
+	@Test
+	void modulePathEntries(@TempDir Path temporaryDirectory) throws IOException {
+		Path archive = Files.createFile(temporaryDirectory.resolve("module.jar"));
+		Path exploded = Files.createDirectory(temporaryDirectory.resolve("exploded"));
+		Files.createFile(exploded.resolve("module-info.class"));
+
+		assertThat(generateModulePath(archive)).containsExactly(archive);
+		assertThat(generateModulePath(exploded)).containsExactly(exploded);
+	}
+
+	@Test
+	void modulePathDirectory(@TempDir Path temporaryDirectory) throws IOException {
+		Path archive = Files.createFile(temporaryDirectory.resolve("module.jar"));
+		Path exploded = Files.createDirectory(temporaryDirectory.resolve("exploded"));
+		Files.createFile(temporaryDirectory.resolve("notes.txt"));
+
+		assertThat(generateModulePath(temporaryDirectory)).containsExactlyInAnyOrder(archive, exploded);
+	}
+
+	private static FileSystem requireRuntimeImage() {
+		Optional<FileSystem> runtimeImage = ModuleResourceSource.runtimeImage();
+		Assumptions.assumeTrue(runtimeImage.isPresent());
+		return runtimeImage.get();
+	}
+
+	private static List<Path> generateImage(FileSystem runtimeImage, PathPrefixFilter filter) {
+		List<Path> result = new ArrayList<>();
+		ModuleResourceSource.generateImagePaths(runtimeImage, filter, result::add);
+		return result;
+	}
+
+	private static List<Path> generateModulePath(Path entry) {
+		List<Path> result = new ArrayList<>();
+		ModuleResourceSource.generateModulePathEntryPaths(entry, result::add);
+		return result;
+	}
+}
@@ -0,0 +1,58 @@
+package org.perfectable.introspection.query;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelListingTest {
+	private static final int PARALLELISM = 2;
+	private static final int ROOT_COUNT = 10;
+	private static final ImmutableList<Path> ROOTS = IntStream.range(0, ROOT_COUNT)
+		.mapToObj(index -> Paths.get("/classpath/element" + index + ".jar"))
+		.collect(ImmutableList.toImmutableList());
+	private static final ElementListing EMPTY_LISTING = ElementListing.of(ImmutableList.of(), ImmutableList.of());
+
+	private final Set<Path> listed = ConcurrentHashMap.newKeySet();
+	private final Function<Path, ElementListing> lister = element -> {
+		listed.add(element);
+		return EMPTY_LISTING;
+	};
+
+	@Test
+	void listsAllRequested() {
+		ParallelListing listing = ParallelListing.of(ROOTS, PARALLELISM, lister);
+		try {
+			for (Path root : ROOTS) {
+				assertThat(listing.apply(root)).isSameAs(EMPTY_LISTING);
+			}
+		}
+		finally {
+			listing.close();
+		}
+
+		assertThat(listed).containsExactlyInAnyOrderElementsOf(ROOTS);
+	}
+
+	@Test
+	void listsBoundedDistanceAhead() {
+		ParallelListing listing = ParallelListing.of(ROOTS, PARALLELISM, lister);
+		try {
+			listing.apply(ROOTS.get(0));
+		}
+		finally {
+			listing.close();
+		}
+
+		assertThat(listed)
+			.contains(ROOTS.get(0))
+			.hasSizeLessThanOrEqualTo(1 + PARALLELISM);
+	}
+}
@@ -0,0 +1,35 @@
+package org.perfectable.introspection.query;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PathPrefixFilterTest {
+	private static final PathPrefixFilter FILTER = PathPrefixFilter.ALL.and("org/example");
+
+	@Test
+	void unrestricted() {
+		assertThat(PathPrefixFilter.ALL.isRestricted()).isFalse();
+		assertThat(PathPrefixFilter.ALL.matches("com/other/Type.class")).isTrue();
+		assertThat(PathPrefixFilter.ALL.mayContain("com/other")).isTrue();
+	}
+
+	@Test
+	void matches() {
+		assertThat(FILTER.matches("org/example/Type.class")).isTrue();
+		assertThat(FILTER.matches("org/examples/Type.class")).isTrue();
+		assertThat(FILTER.matches("org/Type.class")).isFalse();
+		assertThat(FILTER.matches("com/example/Type.class")).isFalse();
+	}
+
+	@Test
+	void mayContain() {
+		assertThat(FILTER.mayContain("")).isTrue();
+		assertThat(FILTER.mayContain("org")).isTrue();
+		assertThat(FILTER.mayContain("org/example")).isTrue();
+		assertThat(FILTER.mayContain("org/example/nested")).isTrue();
+		assertThat(FILTER.mayContain("org/examples")).isTrue();
+		assertThat(FILTER.mayContain("org/exam")).isFalse();
+		assertThat(FILTER.mayContain("com")).isFalse();
+	}
+}
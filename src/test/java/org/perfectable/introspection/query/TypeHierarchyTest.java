@@ -0,0 +1,66 @@
+package org.perfectable.introspection.query;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TypeHierarchyTest {
+	private static final String MISSING_CLASS_NAME = "org.perfectable.introspection.query.Missing";
+
+	private final TypeHierarchy hierarchy = TypeHierarchy.of(ClassFileSource.system());
+
+	@Test
+	void resolveAncestors() {
+		assertThat(hierarchy.resolve(ClassQuery.class.getName(), AbstractQuery.class.getName()))
+			.isEqualTo(TypeHierarchy.Resolution.SUBTYPE);
+		assertThat(hierarchy.resolve(AbstractQuery.class.getName(), AbstractQuery.class.getName()))
+			.isEqualTo(TypeHierarchy.Resolution.SUBTYPE);
+		assertThat(hierarchy.resolve(AbstractQuery.class.getName(), Iterable.class.getName()))
+			.isEqualTo(TypeHierarchy.Resolution.SUBTYPE);
+		assertThat(hierarchy.resolve(Subject.Extension.class.getName(), Iterable.class.getName()))
+			.isEqualTo(TypeHierarchy.Resolution.NOT_SUBTYPE);
+	}
+
+	@Test
+	void resolveUnreadableAncestor(@TempDir Path classpath) throws IOException {
+		// only subclass is available, so its superclass header cannot be read
+		String classFileName = Subject.Extension.class.getName().replace('.', '/') + ".class";
+		Path classFile = classpath.resolve(classFileName);
+		Files.createDirectories(classFile.getParent());
+		try (InputStream source = ClassLoader.getSystemResourceAsStream(classFileName)) {
+			Files.copy(requireNonNull(source), classFile);
+		}
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {classpath.toUri().toURL()}, null)) {
+			TypeHierarchy isolated = TypeHierarchy.of(ClassFileSource.of(loader));
+
+			assertThat(isolated.resolve(Subject.Extension.class.getName(), Subject.class.getName()))
+				.isEqualTo(TypeHierarchy.Resolution.SUBTYPE);
+			assertThat(isolated.resolve(Subject.Extension.class.getName(), Serializable.class.getName()))
+				.isEqualTo(TypeHierarchy.Resolution.UNRESOLVABLE);
+			assertThat(isolated.resolve(Subject.class.getName(), Serializable.class.getName()))
+				.isEqualTo(TypeHierarchy.Resolution.UNRESOLVABLE);
+		}
+	}
+
+	@Test
+	void resolve() {
+		assertThat(hierarchy.resolve(ClassQuery.class.getName(), Iterable.class.getName()))
+			.isEqualTo(TypeHierarchy.Resolution.SUBTYPE);
+		assertThat(hierarchy.resolve(Subject.Extension.class.getName(), Subject.class.getName()))
+			.isEqualTo(TypeHierarchy.Resolution.SUBTYPE);
+		assertThat(hierarchy.resolve(Subject.Extension.class.getName(), Serializable.class.getName()))
+			.isEqualTo(TypeHierarchy.Resolution.NOT_SUBTYPE);
+		assertThat(hierarchy.resolve(MISSING_CLASS_NAME, Object.class.getName()))
+			.isEqualTo(TypeHierarchy.Resolution.UNRESOLVABLE);
+	}
+}
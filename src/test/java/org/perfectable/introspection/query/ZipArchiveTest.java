@@ -0,0 +1,288 @@
+package org.perfectable.introspection.query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ZipArchiveTest {
+	private static final String DEFLATED_NAME = "org/example/Deflated.class";
+	private static final String STORED_NAME = "org/example/Stored.class";
+	private static final byte[] DEFLATED_CONTENT = "deflated deflated deflated".getBytes(StandardCharsets.UTF_8);
+	private static final String LAUNCHER_NAME = "org/launcher/Launcher.class";
+	private static final String APPLICATION_NAME = "org/example/Application.class";
+	private static final String STORED_LIBRARY_NAME = "BOOT-INF/lib/stored.jar";
+	private static final String DEFLATED_LIBRARY_NAME = "BOOT-INF/lib/deflated.jar";
+	private static final byte[] STORED_CONTENT = "stored".getBytes(StandardCharsets.UTF_8);
+	private static final String VERSIONED_NAME = "org/example/Versioned.class";
+	private static final String FUTURE_NAME = "org/example/Future.class";
+	private static final int FIRST_RELEASE = 9;
+	private static final int VERSIONED_RELEASE = 11;
+	private static final int FUTURE_RELEASE = 9999;
+
+	@Test
+	void fileNames(@TempDir Path temporaryDirectory) throws IOException {
+		Path archivePath = createArchive(temporaryDirectory);
+
+		ZipArchive archive = ZipArchive.map(archivePath);
+
+		assertThat(archive.fileNames())
+			.containsExactly(JarFile.MANIFEST_NAME, DEFLATED_NAME, STORED_NAME);
+	}
+
+	@Test
+	void fileNamesWithPrefix(@TempDir Path temporaryDirectory) throws IOException {
+		Path archivePath = createArchive(temporaryDirectory);
+
+		ZipArchive archive = ZipArchive.map(archivePath);
+
+		assertThat(archive.fileNames(PathPrefixFilter.ALL.and("org/example/S")))
+			.containsExactly(STORED_NAME);
+		assertThat(archive.fileNames(PathPrefixFilter.ALL.and("org/other")))
+			.isEmpty();
+	}
+
+	@Test
+	void read(@TempDir Path temporaryDirectory) throws IOException {
+		Path archivePath = createArchive(temporaryDirectory);
+
+		ZipArchive archive = ZipArchive.map(archivePath);
+
+		assertThat(archive.read(DEFLATED_NAME)).hasValue(DEFLATED_CONTENT);
+		assertThat(archive.read(STORED_NAME)).hasValue(STORED_CONTENT);
+		assertThat(archive.read("org/example/Missing.class")).isEmpty();
+	}
+
+	@Test
+	void readRepeatedly(@TempDir Path temporaryDirectory) throws IOException {
+		Path archivePath = createArchive(temporaryDirectory);
+
+		ZipArchive archive = ZipArchive.map(archivePath);
+
+		for (String name : archive.fileNames()) {
+			assertThat(archive.read(name)).isPresent();
+		}
+		assertThat(archive.read(STORED_NAME)).hasValue(STORED_CONTENT);
+		assertThat(archive.read(DEFLATED_NAME)).hasValue(DEFLATED_CONTENT);
+	}
+
+	@Test
+	void listing(@TempDir Path temporaryDirectory) throws IOException {
+		Path archivePath = createArchive(temporaryDirectory);
+
+		ElementListing listing = ElementListing.ofArchive(archivePath);
+
+		assertThat(listing.entries())
+			.containsExactly(JarFile.MANIFEST_NAME, DEFLATED_NAME, STORED_NAME);
+		assertThat(listing.manifestClassPath())
+			.containsExactly("first.jar", "second.jar");
+	}
+
+	@Test
+	void nested(@TempDir Path temporaryDirectory) throws IOException {
+		Path archivePath = createExecutableArchive(temporaryDirectory);
+
+		ZipArchive archive = ZipArchive.map(archivePath);
+
+		assertThat(archive.nested(STORED_LIBRARY_NAME).get().read(STORED_NAME)).hasValue(STORED_CONTENT);
+		assertThat(archive.nested(DEFLATED_LIBRARY_NAME).get().read(DEFLATED_NAME)).hasValue(DEFLATED_CONTENT);
+		assertThat(archive.nested("BOOT-INF/lib/missing.jar")).isEmpty();
+	}
+
+	@Test
+	void listingNestedLayout(@TempDir Path temporaryDirectory) throws IOException {
+		Path archivePath = createExecutableArchive(temporaryDirectory);
+
+		ElementListing listing = ElementListing.ofArchive(archivePath);
+
+		assertThat(listing.entries())
+			.containsExactly(JarFile.MANIFEST_NAME, APPLICATION_NAME, DEFLATED_NAME, STORED_NAME, LAUNCHER_NAME);
+	}
+
+	@Test
+	void listingNestedLayoutWithPrefix(@TempDir Path temporaryDirectory) throws IOException {
+		Path archivePath = createExecutableArchive(temporaryDirectory);
+
+		ElementListing listing = ElementListing.ofArchive(archivePath, PathPrefixFilter.ALL.and("org/example/"));
+
+		assertThat(listing.entries())
+			.containsExactly(APPLICATION_NAME, DEFLATED_NAME, STORED_NAME);
+	}
+
+	@Test
+	void listingRestricted(@TempDir Path temporaryDirectory) throws IOException {
+		Path archivePath = createExecutableArchive(temporaryDirectory);
+
+		ElementListing listing = ElementListing.ofArchive(archivePath)
+			.restrictedTo(PathPrefixFilter.ALL.and("org/example/"));
+
+		assertThat(listing.entries())
+			.containsExactly(APPLICATION_NAME, DEFLATED_NAME, STORED_NAME);
+		assertThat(listing.contains(STORED_NAME)).isTrue();
+		assertThat(listing.contains(LAUNCHER_NAME)).isFalse();
+	}
+
+	@Test
+	void fileNamesMultiRelease(@TempDir Path temporaryDirectory) throws IOException {
+		Path archivePath = createMultiReleaseArchive(temporaryDirectory, true);
+
+		ZipArchive archive = ZipArchive.map(archivePath);
+
+		assertThat(archive.fileNames(PathPrefixFilter.ALL, VERSIONED_RELEASE))
+			.containsExactly(JarFile.MANIFEST_NAME, DEFLATED_NAME, VERSIONED_NAME);
+		assertThat(archive.fileNames(PathPrefixFilter.ALL, VERSIONED_RELEASE - 1))
+			.containsExactly(JarFile.MANIFEST_NAME, DEFLATED_NAME);
+		assertThat(archive.fileNames(PathPrefixFilter.ALL.and("org/example/V"), FUTURE_RELEASE))
+			.containsExactly(VERSIONED_NAME);
+	}
+
+	@Test
+	void listingMultiRelease(@TempDir Path temporaryDirectory) throws IOException {
+		Path archivePath = createMultiReleaseArchive(temporaryDirectory, true);
+
+		ElementListing listing = ElementListing.ofArchive(archivePath);
+
+		assertThat(listing.entries())
+			.contains(JarFile.MANIFEST_NAME, DEFLATED_NAME)
+			.doesNotHaveDuplicates()
+			.noneMatch(entry -> entry.startsWith(MultiRelease.VERSIONS_DIRECTORY))
+			.doesNotContain(FUTURE_NAME);
+	}
+
+	@Test
+	void listingNotMultiRelease(@TempDir Path temporaryDirectory) throws IOException {
+		Path archivePath = createMultiReleaseArchive(temporaryDirectory, false);
+
+		ElementListing listing = ElementListing.ofArchive(archivePath);
+
+		assertThat(listing.entries())
+			.containsExactly(JarFile.MANIFEST_NAME, versionedEntry(VERSIONED_RELEASE, VERSIONED_NAME),
+				versionedEntry(FIRST_RELEASE, DEFLATED_NAME), versionedEntry(FUTURE_RELEASE, FUTURE_NAME),
+				DEFLATED_NAME);
+	}
+
+	@Test
+	void notArchive(@TempDir Path temporaryDirectory) throws IOException {
+		Path textPath = temporaryDirectory.resolve("text.txt");
+		Files.write(textPath, STORED_CONTENT);
+
+		assertThatThrownBy(() -> ZipArchive.map(textPath))
+			.isInstanceOf(ZipException.class);
+		assertThat(ElementListing.ofArchive(textPath).entries())
+			.isEmpty();
+	}
+
+	private static Path createArchive(Path temporaryDirectory) throws IOException {
+		Path archivePath = temporaryDirectory.resolve("archive.jar");
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, "first.jar second.jar");
+		try (OutputStream fileStream = Files.newOutputStream(archivePath);
+			 JarOutputStream jarStream = new JarOutputStream(fileStream, manifest)) {
+			jarStream.putNextEntry(new ZipEntry("org/example/"));
+			jarStream.closeEntry();
+			jarStream.putNextEntry(new ZipEntry(DEFLATED_NAME));
+			jarStream.write(DEFLATED_CONTENT);
+			jarStream.closeEntry();
+			jarStream.putNextEntry(createStoredEntry());
+			jarStream.write(STORED_CONTENT);
+			jarStream.closeEntry();
+		}
+		return archivePath;
+	}
+
+	private static Path createMultiReleaseArchive(Path temporaryDirectory, boolean multiRelease) throws IOException {
+		Path archivePath = temporaryDirectory.resolve("versioned.jar");
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		if (multiRelease) {
+			manifest.getMainAttributes().put(new Attributes.Name("Multi-Release"), "true");
+		}
+		try (OutputStream fileStream = Files.newOutputStream(archivePath);
+			 JarOutputStream jarStream = new JarOutputStream(fileStream, manifest)) {
+			jarStream.putNextEntry(new ZipEntry(DEFLATED_NAME));
+			jarStream.write(DEFLATED_CONTENT);
+			jarStream.closeEntry();
+			jarStream.putNextEntry(new ZipEntry(versionedEntry(FIRST_RELEASE, "")));
+			jarStream.closeEntry();
+			jarStream.putNextEntry(new ZipEntry(versionedEntry(FIRST_RELEASE, DEFLATED_NAME)));
+			jarStream.write(DEFLATED_CONTENT);
+			jarStream.closeEntry();
+			jarStream.putNextEntry(new ZipEntry(versionedEntry(VERSIONED_RELEASE, VERSIONED_NAME)));
+			jarStream.write(DEFLATED_CONTENT);
+			jarStream.closeEntry();
+			jarStream.putNextEntry(new ZipEntry(versionedEntry(FUTURE_RELEASE, FUTURE_NAME)));
+			jarStream.write(DEFLATED_CONTENT);
+			jarStream.closeEntry();
+		}
+		return archivePath;
+	}
+
+	private static String versionedEntry(int release, String name) {
+		return MultiRelease.VERSIONS_DIRECTORY + release + "/" + name;
+	}
+
+	private static Path createExecutableArchive(Path temporaryDirectory) throws IOException {
+		Path archivePath = temporaryDirectory.resolve("executable.jar");
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(new Attributes.Name("Spring-Boot-Classes"), "BOOT-INF/classes/");
+		manifest.getMainAttributes().put(new Attributes.Name("Spring-Boot-Lib"), "BOOT-INF/lib/");
+		try (OutputStream fileStream = Files.newOutputStream(archivePath);
+			 JarOutputStream jarStream = new JarOutputStream(fileStream, manifest)) {
+			jarStream.putNextEntry(new ZipEntry(LAUNCHER_NAME));
+			jarStream.write(STORED_CONTENT);
+			jarStream.closeEntry();
+			jarStream.putNextEntry(new ZipEntry("BOOT-INF/classes/" + APPLICATION_NAME));
+			jarStream.write(STORED_CONTENT);
+			jarStream.closeEntry();
+			byte[] storedLibrary = Files.readAllBytes(createLibrary(temporaryDirectory, STORED_NAME, STORED_CONTENT));
+			jarStream.putNextEntry(createStoredEntry(STORED_LIBRARY_NAME, storedLibrary));
+			jarStream.write(storedLibrary);
+			jarStream.closeEntry();
+			jarStream.putNextEntry(new ZipEntry(DEFLATED_LIBRARY_NAME));
+			jarStream.write(Files.readAllBytes(createLibrary(temporaryDirectory, DEFLATED_NAME, DEFLATED_CONTENT)));
+			jarStream.closeEntry();
+		}
+		return archivePath;
+	}
+
+	private static Path createLibrary(Path temporaryDirectory, String entryName, byte[] content) throws IOException {
+		Path libraryPath = Files.createTempFile(temporaryDirectory, "library", ".jar");
+		try (OutputStream fileStream = Files.newOutputStream(libraryPath);
+			 JarOutputStream jarStream = new JarOutputStream(fileStream)) {
+			jarStream.putNextEntry(new ZipEntry(entryName));
+			jarStream.write(content);
+			jarStream.closeEntry();
+		}
+		return libraryPath;
+	}
+
+	private static ZipEntry createStoredEntry() {
+		return createStoredEntry(STORED_NAME, STORED_CONTENT);
+	}
+
+	private static ZipEntry createStoredEntry(String name, byte[] content) {
+		ZipEntry storedEntry = new ZipEntry(name);
+		storedEntry.setMethod(ZipEntry.STORED);
+		storedEntry.setSize(content.length);
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		storedEntry.setCrc(crc.getValue());
+		return storedEntry;
+	}
+}